@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Добавление фильмов по одному и пакетом; результат приведён к одному фильму.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmBatchInsertBenchmark {
+    private static final int FILMS_PER_INVOCATION = 100;
+
+    private SeededApplication application;
+    private FilmDbStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = SeededApplication.start(0, 0, 0, 0);
+        filmStorage = application.getBean(FilmDbStorage.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS_PER_INVOCATION)
+    public void addFilmOneByOne() {
+        for (int i = 0; i < FILMS_PER_INVOCATION; i++) {
+            filmStorage.addFilm(SeededApplication.film(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILMS_PER_INVOCATION)
+    public List<Integer> addFilmsBatch() {
+        List<Film> films = new ArrayList<>(FILMS_PER_INVOCATION);
+        for (int i = 0; i < FILMS_PER_INVOCATION; i++) {
+            films.add(SeededApplication.film(i));
+        }
+        return filmStorage.addFilms(films);
+    }
+}
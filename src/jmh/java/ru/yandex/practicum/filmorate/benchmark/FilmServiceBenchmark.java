@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение и лайки фильмов через сервисный слой на заполненной базе. Сервис читает фильм по ID через кэш, поэтому
+ * чтение из БД измеряется отдельно, напрямую через {@link FilmDbStorage}.
+ * Пропускная способность и распределение задержек: mvn -Pjmh verify -Djmh.args="FilmServiceBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+    @Param("10000")
+    private int users;
+    @Param("10000")
+    private int films;
+    @Param("20")
+    private int likesPerUser;
+
+    private SeededApplication application;
+    private FilmService filmService;
+    private FilmDbStorage filmDbStorage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = SeededApplication.start(users, films, likesPerUser, 0);
+        filmService = application.getBean(FilmService.class);
+        filmDbStorage = application.getBean(FilmDbStorage.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmService.getAllFilms();
+    }
+
+    @Benchmark
+    public Film findFilmByIDCached() {
+        return filmService.findFilmByID(randomFilm());
+    }
+
+    @Benchmark
+    public Film findFilmByIDFromDatabase() {
+        return filmDbStorage.getFilmByID(randomFilm());
+    }
+
+    @Benchmark
+    public List<Film> findTopLikedFilms() {
+        return filmService.findTopLikedFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> findTopLikedFilmsByGenreAndYear() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return filmService.findTopLikedFilms(10, random.nextInt(1, 7), random.nextInt(1960, 2024));
+    }
+
+    @Benchmark
+    public void addLike() {
+        filmService.addLike(randomFilm(), ThreadLocalRandom.current().nextInt(1, users + 1));
+    }
+
+    @Benchmark
+    public List<Film> getRecommendations() {
+        return filmService.getRecommendations(ThreadLocalRandom.current().nextInt(1, users + 1), 10);
+    }
+
+    @Benchmark
+    public List<Film> searchFilms() {
+        return filmService.searchFilms("фильм " + randomFilm(), 10);
+    }
+
+    private int randomFilm() {
+        return ThreadLocalRandom.current().nextInt(1, films + 1);
+    }
+}
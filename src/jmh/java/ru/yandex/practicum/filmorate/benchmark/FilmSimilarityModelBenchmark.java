@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityModel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Модель похожести фильмов без БД: полная перестройка, чтение и обновление по одному лайку.
+ * Объём каталога задаётся параметрами, например -p users=1000000 -p films=100000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FilmSimilarityModelBenchmark {
+    @Param("100000")
+    private int users;
+    @Param("10000")
+    private int films;
+    @Param("20")
+    private int likesPerUser;
+
+    private Map<Integer, int[]> userFilms;
+    private FilmSimilarityModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        userFilms = new HashMap<>();
+        for (int user = 1; user <= users; user++) {
+            int[] liked = new int[1 + random.nextInt(2 * likesPerUser)];
+            for (int i = 0; i < liked.length; i++) {
+                liked[i] = SeededApplication.skewedId(random, films);
+            }
+            userFilms.put(user, Arrays.stream(liked).distinct().sorted().toArray());
+        }
+        model = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        model.rebuild(userFilms);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public FilmSimilarityModel rebuild() {
+        FilmSimilarityModel rebuilt = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        rebuilt.rebuild(userFilms);
+        return rebuilt;
+    }
+
+    @Benchmark
+    public int[] recommendFilms() {
+        return model.recommendFilms(ThreadLocalRandom.current().nextInt(1, users + 1), 10);
+    }
+
+    @Benchmark
+    public int[] similarFilms() {
+        return model.similarFilms(SeededApplication.skewedId(ThreadLocalRandom.current(), films), 10);
+    }
+
+    @Benchmark
+    public void addAndRemoveLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = SeededApplication.skewedId(random, films);
+        int userId = random.nextInt(1, users + 1);
+        model.addLike(filmId, userId);
+        model.removeLike(filmId, userId);
+    }
+}
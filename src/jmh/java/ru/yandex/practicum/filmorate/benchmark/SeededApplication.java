@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Приложение без веб-сервера поверх отдельной H2 в памяти, заполненной заданным числом пользователей,
+ * фильмов, лайков и дружб. Популярность фильмов и друзей распределена неравномерно, как в реальных данных:
+ * небольшая часть фильмов и пользователей собирает большую часть связей.
+ */
+public final class SeededApplication implements AutoCloseable {
+    private static final int CHUNK = 10_000;
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final ConfigurableApplicationContext context;
+
+    private SeededApplication(ConfigurableApplicationContext context) {
+        this.context = context;
+    }
+
+    public static SeededApplication start(int users, int films, int likesPerUser, int friendsPerUser) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+        SeededApplication application = new SeededApplication(context);
+        application.seed(users, films, likesPerUser, friendsPerUser);
+        return application;
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    /**
+     * Случайный ID от 1 до {@code size}, где малые ID выпадают чаще: доля ID меньше x*size равна корню из x.
+     */
+    public static int skewedId(Random random, int size) {
+        double uniform = random.nextDouble();
+        return 1 + (int) (size * uniform * uniform);
+    }
+
+    public static Film film(int number) {
+        return Film.builder()
+                .name("Фильм " + number)
+                .description("Описание фильма номер " + number)
+                .releaseDate(LocalDate.of(1960 + number % 64, 1 + number % 12, 1))
+                .duration(80 + number % 60)
+                .mpa(MPA.builder().id(1 + number % 5).build())
+                .genres(List.of(Genre.builder().id(1 + number % 6).build()))
+                .build();
+    }
+
+    private void seed(int users, int films, int likesPerUser, int friendsPerUser) {
+        UserDbStorage userStorage = context.getBean(UserDbStorage.class);
+        FilmDbStorage filmStorage = context.getBean(FilmDbStorage.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+
+        for (int from = 1; from <= users; from += CHUNK) {
+            List<User> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK, users + 1); i++) {
+                chunk.add(User.builder().email("user" + i + "@mail.ru").login("user" + i).name("Пользователь " + i)
+                        .birthday(LocalDate.of(1970 + i % 40, 1, 1)).build());
+            }
+            userStorage.addUsers(chunk);
+        }
+        for (int from = 1; from <= films; from += CHUNK) {
+            List<Film> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(from + CHUNK, films + 1); i++) {
+                chunk.add(film(i));
+            }
+            filmStorage.addFilms(chunk);
+        }
+        insertPairs(jdbcTemplate, "MERGE INTO likes (film_id, user_id) VALUES (?, ?)", users, likesPerUser, films, random, false);
+        insertPairs(jdbcTemplate, "MERGE INTO friendship (user_id, friend_id) VALUES (?, ?)", users, friendsPerUser, users, random, true);
+
+        filmStorage.reconcileLikeCounts();
+        filmStorage.init();
+        userStorage.rebuildFriendGraph();
+    }
+
+    /**
+     * Пакетно вставляет для каждого пользователя {@code perUser} связей с объектами от 1 до {@code targets}.
+     *
+     * @param userFirst порядок колонок: пользователь первым (дружба) или вторым (лайк)
+     */
+    private static void insertPairs(JdbcTemplate jdbcTemplate, String sql, int users, int perUser, int targets,
+                                    Random random, boolean userFirst) {
+        List<Object[]> batch = new ArrayList<>(CHUNK);
+        for (int user = 1; user <= users; user++) {
+            for (int i = 0; i < perUser; i++) {
+                int target = skewedId(random, targets);
+                if (userFirst && target == user) {
+                    continue;
+                }
+                batch.add(userFirst ? new Object[]{user, target} : new Object[]{target, user});
+                if (batch.size() == CHUNK) {
+                    jdbcTemplate.batchUpdate(sql, batch);
+                    batch.clear();
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(sql, batch);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Друзья, общие друзья и рекомендации друзей через сервисный слой на заполненной базе.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+    @Param("10000")
+    private int users;
+    @Param("50")
+    private int friendsPerUser;
+
+    private SeededApplication application;
+    private UserService userService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = SeededApplication.start(users, 100, 0, friendsPerUser);
+        userService = application.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public List<User> getFriendsOfUser() {
+        return userService.getFriendsOfUser(randomUser());
+    }
+
+    @Benchmark
+    public List<User> getFriendsCrossing() {
+        return userService.getFriendsCrossing(randomUser(), randomUser());
+    }
+
+    @Benchmark
+    public List<User> getFriendSuggestions() {
+        return userService.getFriendSuggestions(randomUser(), 10).join();
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, users + 1);
+    }
+}
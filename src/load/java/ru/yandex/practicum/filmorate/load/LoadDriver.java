@@ -0,0 +1,256 @@
+package ru.yandex.practicum.filmorate.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Нагрузочный драйвер для запущенного приложения: замкнутый цикл из {@code concurrency} потоков в течение
+ * {@code duration} секунд отправляет запросы к эндпоинтам {@code /films} и {@code /users} в заданной пропорции
+ * и печатает пропускную способность и задержки p50/p99/p999 по каждому эндпоинту.
+ * Пользователи и фильмы выбираются неравномерно, как в данных {@code DatasetGenerator}: малые ID чаще.
+ *
+ * <p>Запуск: {@code mvn -P load verify -Dload.args="--users=1000000 --films=100000 --duration=60"}.
+ * Параметры: {@code --base-url}, {@code --duration}, {@code --warmup}, {@code --concurrency}, {@code --users},
+ * {@code --films}, {@code --skew}, {@code --mix=popular:30,film:20,...}.
+ */
+public final class LoadDriver {
+    private static final String DEFAULT_MIX =
+            "popular:25,film:20,films-page:10,like:10,friends:10,common:5,suggestions:5,recommendations:5,similar:5,search:5";
+    private static final String[] SEARCH_WORDS = {"фильм", "описание", "синтетического", "1", "42", "100"};
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int users;
+    private final int films;
+    private final double skew;
+    private final Map<String, Function<SplittableRandom, HttpRequest>> endpoints = new LinkedHashMap<>();
+
+    private LoadDriver(String baseUrl, int users, int films, double skew) {
+        this.client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.baseUrl = baseUrl;
+        this.users = users;
+        this.films = films;
+        this.skew = skew;
+        endpoints.put("popular", random -> get("/films/popular?count=10"));
+        endpoints.put("film", random -> get("/films/" + film(random)));
+        endpoints.put("films-page", random -> get("/films?limit=50&after=" + film(random)));
+        endpoints.put("like", random -> put("/films/" + film(random) + "/like/" + user(random)));
+        endpoints.put("friends", random -> get("/users/" + user(random) + "/friends"));
+        endpoints.put("common", random -> get("/users/" + user(random) + "/friends/common/" + user(random)));
+        endpoints.put("suggestions", random -> get("/users/" + user(random) + "/friends/suggestions"));
+        endpoints.put("recommendations", random -> get("/users/" + user(random) + "/recommendations?count=10"));
+        endpoints.put("similar", random -> get("/films/" + film(random) + "/similar?count=10"));
+        endpoints.put("search", random -> get("/films/search?count=10&q="
+                + URLEncoder.encode(SEARCH_WORDS[random.nextInt(SEARCH_WORDS.length)], StandardCharsets.UTF_8)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        LoadDriver driver = new LoadDriver(
+                options.getOrDefault("base-url", "http://localhost:8080"),
+                Integer.parseInt(options.getOrDefault("users", "1000")),
+                Integer.parseInt(options.getOrDefault("films", "1000")),
+                Double.parseDouble(options.getOrDefault("skew", "1.0")));
+        Map<String, Integer> mix = driver.parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        long warmup = Long.parseLong(options.getOrDefault("warmup", "10"));
+        long duration = Long.parseLong(options.getOrDefault("duration", "60"));
+
+        if (warmup > 0) {
+            System.out.printf("Прогрев %d с...%n", warmup);
+            driver.run(mix, concurrency, warmup);
+        }
+        System.out.printf("Нагрузка %d с, %d потоков, смесь %s%n", duration, concurrency, mix);
+        long started = System.nanoTime();
+        Map<String, Recorder> results = driver.run(mix, concurrency, duration);
+        report(results, (System.nanoTime() - started) / 1e9);
+    }
+
+    private Map<String, Recorder> run(Map<String, Integer> mix, int concurrency, long seconds) throws Exception {
+        String[] names = mix.keySet().toArray(String[]::new);
+        int[] cumulative = new int[names.length];
+        int total = 0;
+        for (int i = 0; i < names.length; i++) {
+            total += mix.get(names[i]);
+            cumulative[i] = total;
+        }
+        int weights = total;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<Map<String, Recorder>>> workers = new ArrayList<>();
+            for (int worker = 0; worker < concurrency; worker++) {
+                long seed = worker;
+                workers.add(executor.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    Map<String, Recorder> recorders = new LinkedHashMap<>();
+                    while (System.nanoTime() < deadline) {
+                        int pick = random.nextInt(weights);
+                        int index = 0;
+                        while (cumulative[index] <= pick) {
+                            index++;
+                        }
+                        String name = names[index];
+                        HttpRequest request = endpoints.get(name).apply(random);
+                        long start = System.nanoTime();
+                        boolean failed;
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            failed = status >= 500;
+                        } catch (IOException e) {
+                            failed = true;
+                        }
+                        recorders.computeIfAbsent(name, key -> new Recorder()).record(System.nanoTime() - start, failed);
+                    }
+                    return recorders;
+                }));
+            }
+            Map<String, Recorder> merged = new LinkedHashMap<>();
+            for (String name : names) {
+                merged.put(name, new Recorder());
+            }
+            for (Future<Map<String, Recorder>> worker : workers) {
+                worker.get().forEach((name, recorder) -> merged.get(name).merge(recorder));
+            }
+            return merged;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void report(Map<String, Recorder> results, double elapsedSeconds) {
+        System.out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        Recorder all = new Recorder();
+        for (Map.Entry<String, Recorder> entry : results.entrySet()) {
+            print(entry.getKey(), entry.getValue(), elapsedSeconds);
+            all.merge(entry.getValue());
+        }
+        print("total", all, elapsedSeconds);
+    }
+
+    private static void print(String name, Recorder recorder, double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(recorder.latencies, recorder.count);
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%-16s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                name, recorder.count, recorder.errors, recorder.count / elapsedSeconds,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            if (!endpoints.containsKey(nameAndWeight[0])) {
+                throw new IllegalArgumentException("Неизвестный эндпоинт " + nameAndWeight[0]
+                        + ", доступны " + endpoints.keySet());
+            }
+            int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+            if (weight > 0) {
+                weights.put(nameAndWeight[0], weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь запросов не должна быть пустой");
+        }
+        return weights;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидается параметр вида --name=value: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    /**
+     * ID от 1 до {@code size} по закону Ципфа с показателем {@code skew}, как в генераторе данных.
+     */
+    private int skewedId(SplittableRandom random, int size) {
+        double uniform = random.nextDouble();
+        double value;
+        if (Math.abs(skew - 1) < 1e-9) {
+            value = Math.pow(size + 1, uniform);
+        } else {
+            double exponent = 1 - skew;
+            value = Math.pow((Math.pow(size + 1, exponent) - 1) * uniform + 1, 1 / exponent);
+        }
+        return Math.min(size, (int) value);
+    }
+
+    private int user(SplittableRandom random) {
+        return skewedId(random, users);
+    }
+
+    private int film(SplittableRandom random) {
+        return skewedId(random, films);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private HttpRequest put(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30))
+                .PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    /**
+     * Задержки одного эндпоинта в одном потоке, без синхронизации; объединяются после завершения потоков.
+     */
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        void record(long nanos, boolean failed) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        void merge(Recorder other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.storage.ClientWrites;
+import ru.yandex.practicum.filmorate.storage.ReplicaRoutingPostProcessor;
+
+import java.util.Set;
+
+/**
+ * Узнаёт клиента по заголовку {@code filmorate.replica.client-header} и отмечает его запросы на изменение,
+ * чтобы после своей записи клиент читал из основной БД, пока реплика её не получит.
+ * Запросы без заголовка читают из реплики в пределах допустимого отставания.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.replica.enabled")
+public class ClientWritesInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final ClientWrites clientWrites;
+    private final String clientHeader;
+
+    public ClientWritesInterceptor(ReplicaRoutingPostProcessor replicaRouting,
+                                   @Value("${filmorate.replica.client-header:X-Client-Id}") String clientHeader) {
+        this.clientWrites = replicaRouting.getClientWrites();
+        this.clientHeader = clientHeader;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    /**
+     * При повторной диспетчеризации асинхронного запроса клиент только привязывается к потоку: запись уже отмечена
+     * при первой диспетчеризации, а {@link #afterCompletion} вызывается для запроса один раз.
+     */
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        boolean asyncDispatch = request.getDispatcherType() == DispatcherType.ASYNC;
+        clientWrites.begin(request.getHeader(clientHeader), !asyncDispatch && isWrite(request));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        clientWrites.detach();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        clientWrites.end(request.getHeader(clientHeader), isWrite(request));
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        return !SAFE_METHODS.contains(request.getMethod());
+    }
+}
@@ -3,8 +3,12 @@ package ru.yandex.practicum.filmorate.controllers;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import java.util.List;
@@ -14,10 +18,12 @@ import java.util.List;
 @Slf4j
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
 
     @Autowired
-    public FilmController(FilmService service) {
+    public FilmController(FilmService service, NdjsonStreamer ndjsonStreamer) {
         this.filmService = service;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @GetMapping
@@ -26,21 +32,64 @@ public class FilmController {
         return filmService.getAllFilms();
     }
 
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.info("Получен GET запрос на :PORT/films с выгрузкой в NDJSON");
+        return ndjsonStreamer.stream(filmService::streamAllFilms);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllFilmsByParam() {
+        return streamAllFilms();
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<List<Film>> getFilmsPage(@RequestParam(required = false) String after,
+                                                   @RequestParam Integer limit,
+                                                   @RequestParam(defaultValue = "id") String sort) {
+        log.info("Получен GET запрос на :PORT/films?after={}&limit={}&sort={}", after, limit, sort);
+        KeysetPage<Film> page = filmService.getFilmsPage(sort, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(KeysetPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
     @PostMapping
     public Film createFilm(@Valid @RequestBody final Film film) {
         log.info("Получен POST запрос на :PORT/films");
         return filmService.addFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Integer> createFilms(@RequestBody final List<@Valid Film> films) {
+        log.info("Получен POST запрос на :PORT/films/batch с {} фильмами", films.size());
+        return filmService.addFilms(films);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(required = false) String q, @RequestParam(defaultValue = "10") Integer count) {
+        log.info("Получен GET запрос на :PORT/films/search?q={}&count={}", q, count);
+        return filmService.searchFilms(q, count);
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody final Film film) {
         log.info("Получен PUT запрос на :PORT/films");
         return filmService.updateFilm(film);
     }
 
+    /**
+     * Если версия фильма совпадает с {@code If-None-Match}, отвечает 304 без чтения фильма из БД.
+     */
     @GetMapping("/{id}")
-    public Film findFilmByID(@PathVariable Integer id) {
+    public Film findFilmByID(@PathVariable Integer id, WebRequest request) {
         log.info("Получен GET запрос на :PORT/films/{id}");
+        String eTag = filmService.getFilmETag(id);
+        if (eTag != null && request.checkNotModified(eTag)) {
+            return null;
+        }
         return filmService.findFilmByID(id);
     }
 
@@ -57,8 +106,20 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public List<Film> findTopLikedFilms(@RequestParam(defaultValue = "10") Integer count) {
-        log.info("Получен GET запрос на :PORT/films/popular?count={}", count);
-        return filmService.findTopLikedFilms(count);
+    public List<Film> findTopLikedFilms(@RequestParam(defaultValue = "10") Integer count,
+                                        @RequestParam(required = false) Integer genreId,
+                                        @RequestParam(required = false) Integer year,
+                                        WebRequest request) {
+        log.info("Получен GET запрос на :PORT/films/popular?count={}&genreId={}&year={}", count, genreId, year);
+        if (request.checkNotModified(filmService.getTopLikedFilmsETag(count, genreId))) {
+            return null;
+        }
+        return filmService.findTopLikedFilms(count, genreId, year);
+    }
+
+    @GetMapping("/{filmID}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Integer filmID, @RequestParam(defaultValue = "10") Integer count) {
+        log.info("Получен GET запрос на :PORT/films/{film_id}/similar?count={}", count);
+        return filmService.getSimilarFilms(filmID, count);
     }
 }
\ No newline at end of file
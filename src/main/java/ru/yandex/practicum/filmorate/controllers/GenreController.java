@@ -6,6 +6,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
@@ -23,14 +24,22 @@ public class GenreController {
     }
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public List<Genre> getAllGenres(WebRequest request) {
         log.info("GET запрос на все жанры фильмов");
+        if (request.checkNotModified(genreService.getETag())) {
+            return null;
+        }
         return genreService.getAllGenres();
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreByID(@PathVariable int id) {
+    public Genre getGenreByID(@PathVariable int id, WebRequest request) {
         log.info("GET запрос на жанр фильма с ID {}", id);
-        return genreService.getGenreByID(id);
+        String eTag = genreService.getETag();
+        Genre genre = genreService.getGenreByID(id);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return genre;
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.controllers;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
@@ -20,14 +21,22 @@ public class MpaController {
     }
 
     @GetMapping
-    public List<MPA> getAllMpa() {
+    public List<MPA> getAllMpa(WebRequest request) {
         log.info("GET запрос на все рейтинги фильмов");
+        if (request.checkNotModified(mpaService.getETag())) {
+            return null;
+        }
         return mpaService.getAllMpa();
     }
 
     @GetMapping("/{id}")
-    public MPA findMpaByID(@PathVariable int id) {
+    public MPA findMpaByID(@PathVariable int id, WebRequest request) {
         log.info("GET запрос на рейтинг фильма с ID {}", id);
-        return mpaService.findMpaByID(id);
+        String eTag = mpaService.getETag();
+        MPA mpa = mpaService.findMpaByID(id);
+        if (request.checkNotModified(eTag)) {
+            return null;
+        }
+        return mpa;
     }
 }
\ No newline at end of file
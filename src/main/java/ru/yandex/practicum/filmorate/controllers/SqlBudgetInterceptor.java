@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.controllers;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.storage.SqlStatementScope;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Считает JDBC-запросы и время БД на каждый HTTP-запрос и сравнивает число запросов с бюджетом эндпоинта.
+ * Бюджет задаётся для шаблона пути, например {@code GET /films/{id}=4}, остальным эндпоинтам достаётся бюджет
+ * по умолчанию. Превышение пишется в лог и в счётчик {@code filmorate.sql.budget.exceeded}, так что новый N+1
+ * виден по метрикам ещё до того, как заметно вырастет задержка.
+ * <p>
+ * Асинхронный запрос даёт одно измерение на весь запрос: при уходе в асинхронный режим область отвязывается
+ * от потока, остаётся в атрибуте запроса и продолжает счёт при повторной диспетчеризации. Запросы к БД из рабочих
+ * потоков попадают в измерение, только если область передана в поток ({@link SqlStatementScope#attach()}),
+ * выгрузка NDJSON в него не попадает.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.sql.budget.enabled", matchIfMissing = true)
+@Slf4j
+public class SqlBudgetInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+    private static final String SCOPE_ATTRIBUTE = SqlBudgetInterceptor.class.getName() + ".scope";
+
+    private final MeterRegistry meterRegistry;
+    private final int defaultBudget;
+    private final Map<String, Integer> budgets = new HashMap<>();
+    private final Map<String, EndpointMeters> meters = new ConcurrentHashMap<>();
+
+    public SqlBudgetInterceptor(MeterRegistry meterRegistry,
+                                @Value("${filmorate.sql.budget.default:20}") int defaultBudget,
+                                @Value("${filmorate.sql.budget.endpoints:}") List<String> endpointBudgets) {
+        this.meterRegistry = meterRegistry;
+        this.defaultBudget = defaultBudget;
+        for (String endpointBudget : endpointBudgets) {
+            int separatorIndex = endpointBudget.lastIndexOf('=');
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Ожидается бюджет вида 'GET /films/{id}=4': " + endpointBudget);
+            }
+            budgets.put(endpointBudget.substring(0, separatorIndex).trim(),
+                    Integer.parseInt(endpointBudget.substring(separatorIndex + 1).trim()));
+        }
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() == DispatcherType.ASYNC
+                && request.getAttribute(SCOPE_ATTRIBUTE) instanceof SqlStatementScope scope) {
+            scope.attach();
+        } else {
+            request.setAttribute(SCOPE_ATTRIBUTE, SqlStatementScope.open());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(SCOPE_ATTRIBUTE) instanceof SqlStatementScope scope) {
+            scope.detach();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        finish(request);
+    }
+
+    private void finish(HttpServletRequest request) {
+        if (!(request.getAttribute(SCOPE_ATTRIBUTE) instanceof SqlStatementScope scope)) {
+            return;
+        }
+        request.removeAttribute(SCOPE_ATTRIBUTE);
+        scope.close();
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern == null ? "UNKNOWN" : pattern);
+        EndpointMeters endpointMeters = meters.computeIfAbsent(endpoint, this::register);
+        endpointMeters.statements().record(scope.getStatements());
+        endpointMeters.time().record(scope.getNanos(), TimeUnit.NANOSECONDS);
+        if (scope.getStatements() > endpointMeters.budget()) {
+            endpointMeters.exceeded().increment();
+            log.warn("Запрос {} выполнил {} SQL-запросов при бюджете {}, время БД {} мс", endpoint,
+                    scope.getStatements(), endpointMeters.budget(), TimeUnit.NANOSECONDS.toMillis(scope.getNanos()));
+        }
+    }
+
+    private EndpointMeters register(String endpoint) {
+        return new EndpointMeters(budgets.getOrDefault(endpoint, defaultBudget),
+                DistributionSummary.builder("filmorate.sql.request.statements")
+                        .description("Число SQL-запросов на один HTTP-запрос без выгрузки NDJSON из рабочих потоков")
+                        .tag("endpoint", endpoint)
+                        .register(meterRegistry),
+                Timer.builder("filmorate.sql.request.time")
+                        .description("Суммарное время SQL-запросов на один HTTP-запрос без выгрузки NDJSON из рабочих потоков")
+                        .tag("endpoint", endpoint)
+                        .register(meterRegistry),
+                Counter.builder("filmorate.sql.budget.exceeded")
+                        .description("HTTP-запросы, превысившие бюджет SQL-запросов")
+                        .tag("endpoint", endpoint)
+                        .register(meterRegistry));
+    }
+
+    private record EndpointMeters(int budget, DistributionSummary statements, Timer time, Counter exceeded) {
+    }
+}
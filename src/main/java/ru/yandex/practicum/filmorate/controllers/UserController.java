@@ -3,21 +3,37 @@ package ru.yandex.practicum.filmorate.controllers;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserImportService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/users")
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final UserImportService userImportService;
+    private final FilmService filmService;
+    private final NdjsonStreamer ndjsonStreamer;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService, FilmService filmService,
+                          NdjsonStreamer ndjsonStreamer) {
         this.userService = userService;
+        this.userImportService = userImportService;
+        this.filmService = filmService;
+        this.ndjsonStreamer = ndjsonStreamer;
     }
 
     @GetMapping
@@ -26,12 +42,42 @@ public class UserController {
         return userService.getAllUsers();
     }
 
+    @GetMapping(produces = NdjsonStreamer.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("Получен GET запрос на :PORT/users с выгрузкой в NDJSON");
+        return ndjsonStreamer.stream(userService::streamAllUsers);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllUsersByParam() {
+        return streamAllUsers();
+    }
+
+    @GetMapping(params = "limit")
+    public ResponseEntity<List<User>> getUsersPage(@RequestParam(required = false) String after,
+                                                   @RequestParam Integer limit,
+                                                   @RequestParam(defaultValue = "id") String sort) {
+        log.info("Получен GET запрос на :PORT/users?after={}&limit={}&sort={}", after, limit, sort);
+        KeysetPage<User> page = userService.getUsersPage(sort, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(KeysetPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
     @PostMapping
     public User createUser(@Valid @RequestBody final User user) {
         log.info("Получен POST запрос на :PORT/users");
         return userService.addUser(user);
     }
 
+    @PostMapping("/batch")
+    public UserImportReport importUsers(InputStream body) {
+        log.info("Получен POST запрос на :PORT/users/batch");
+        return userImportService.importUsers(body);
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody final User user) {
         log.info("Получен PUT запрос на :PORT/users");
@@ -62,9 +108,22 @@ public class UserController {
         return userService.getFriendsOfUser(userID);
     }
 
+    @GetMapping("/{userID}/friends/suggestions")
+    public CompletableFuture<List<User>> getFriendSuggestions(@PathVariable int userID,
+                                                              @RequestParam(defaultValue = "10") Integer limit) {
+        log.info("Получен GET запрос на :PORT/users/{id}/friends/suggestions?limit={}", limit);
+        return userService.getFriendSuggestions(userID, limit);
+    }
+
     @GetMapping("/{userID}/friends/common/{anotherID}")
     public List<User> getFriendsCrossing(@PathVariable int userID, @PathVariable int anotherID) {
         log.info("Получен GET запрос на :PORT/{id}/friends/common/{another_id}");
         return userService.getFriendsCrossing(userID, anotherID);
     }
+
+    @GetMapping("/{userID}/recommendations")
+    public List<Film> getRecommendations(@PathVariable int userID, @RequestParam(defaultValue = "10") Integer count) {
+        log.info("Получен GET запрос на :PORT/users/{id}/recommendations?count={}", count);
+        return filmService.getRecommendations(userID, count);
+    }
 }
\ No newline at end of file
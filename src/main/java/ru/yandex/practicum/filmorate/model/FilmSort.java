@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.util.function.Function;
+
+public enum FilmSort {
+    ID("id", film -> null),
+    NAME("name", Film::getName),
+    RELEASE_DATE("releaseDate", film -> film.getReleaseDate().toString());
+
+    private final String param;
+    private final Function<Film, String> sortValueExtractor;
+
+    FilmSort(String param, Function<Film, String> sortValueExtractor) {
+        this.param = param;
+        this.sortValueExtractor = sortValueExtractor;
+    }
+
+    public KeysetCursor cursorOf(Film film) {
+        return new KeysetCursor(sortValueExtractor.apply(film), film.getId());
+    }
+
+    public static FilmSort fromParam(String param) {
+        for (FilmSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param) || sort.name().equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new ValidationException("Неизвестный ключ сортировки фильмов: " + param);
+    }
+}
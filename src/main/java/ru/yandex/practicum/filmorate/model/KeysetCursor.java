@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в выдаче при постраничном чтении по ключу: значение ключа сортировки последней записи страницы
+ * и её ID для однозначного порядка. При сортировке по ID токен курсора - просто ID, поэтому работает {@code ?after=<id>}.
+ */
+@Value
+public class KeysetCursor {
+    private static final char SEPARATOR = '|';
+
+    String sortValue;
+    int id;
+
+    public String encode() {
+        if (sortValue == null) {
+            return String.valueOf(id);
+        }
+        String raw = sortValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param withSortValue {@code false} для сортировки по ID, когда токен содержит только ID
+     */
+    public static KeysetCursor decode(String token, boolean withSortValue) {
+        try {
+            if (!withSortValue) {
+                return new KeysetCursor(null, Integer.parseInt(token));
+            }
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separatorIndex = raw.lastIndexOf(SEPARATOR);
+            return new KeysetCursor(raw.substring(0, separatorIndex), Integer.parseInt(raw.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + token);
+        }
+    }
+}
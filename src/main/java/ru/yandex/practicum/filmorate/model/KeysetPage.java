@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница выдачи и курсор следующей страницы, {@code null} если страница последняя.
+ */
+@Value
+public class KeysetPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    List<T> items;
+    String nextCursor;
+
+    /**
+     * Собирает страницу из выборки, запрошенной с запасом в одну запись: наличие лишней записи означает,
+     * что следующая страница есть, и курсор строится по последней записи текущей.
+     */
+    public static <T> KeysetPage<T> of(List<T> fetched, int limit, Function<T, KeysetCursor> cursorOf) {
+        if (fetched.size() <= limit) {
+            return new KeysetPage<>(fetched, null);
+        }
+        List<T> items = new ArrayList<>(fetched.subList(0, limit));
+        return new KeysetPage<>(items, cursorOf.apply(items.get(limit - 1)).encode());
+    }
+}
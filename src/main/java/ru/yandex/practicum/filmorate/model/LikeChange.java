@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+/**
+ * Постановка ({@code liked = true}) или снятие лайка пользователя фильму.
+ */
+@Value
+public class LikeChange {
+    int filmId;
+    int userId;
+    boolean liked;
+}
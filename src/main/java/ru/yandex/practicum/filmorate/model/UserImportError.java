@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+/**
+ * Строка импорта, которую не удалось добавить.
+ */
+@Value
+public class UserImportError {
+    /**
+     * Номер записи во входных данных, начиная с 0.
+     */
+    int row;
+    String email;
+    String login;
+    String message;
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Итог импорта пользователей. Список ошибок ограничен по размеру, полное число отклонённых строк - в {@code failed}.
+ */
+@Value
+public class UserImportReport {
+    int imported;
+    int failed;
+    List<UserImportError> errors;
+    long durationMillis;
+    double rowsPerSecond;
+}
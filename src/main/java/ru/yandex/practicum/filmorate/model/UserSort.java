@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+
+import java.util.function.Function;
+
+public enum UserSort {
+    ID("id", user -> null),
+    NAME("name", User::getName);
+
+    private final String param;
+    private final Function<User, String> sortValueExtractor;
+
+    UserSort(String param, Function<User, String> sortValueExtractor) {
+        this.param = param;
+        this.sortValueExtractor = sortValueExtractor;
+    }
+
+    public KeysetCursor cursorOf(User user) {
+        return new KeysetCursor(sortValueExtractor.apply(user), user.getId());
+    }
+
+    public static UserSort fromParam(String param) {
+        for (UserSort sort : values()) {
+            if (sort.param.equalsIgnoreCase(param)) {
+                return sort;
+            }
+        }
+        throw new ValidationException("Неизвестный ключ сортировки пользователей: " + param);
+    }
+}
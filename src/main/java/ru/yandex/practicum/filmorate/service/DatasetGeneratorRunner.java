@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.DatasetGenerator;
+
+/**
+ * Генерация синтетических данных при запуске приложения, например
+ * {@code java -jar filmorate.jar --filmorate.dataset.users=1000000 --filmorate.dataset.films=100000}.
+ */
+@Component
+@ConditionalOnProperty("filmorate.dataset.users")
+@Slf4j
+public class DatasetGeneratorRunner implements ApplicationRunner {
+    private final DatasetGenerator generator;
+    private final DatasetGenerator.Spec spec;
+
+    @Autowired
+    public DatasetGeneratorRunner(DatasetGenerator generator,
+                                  @Value("${filmorate.dataset.users}") int users,
+                                  @Value("${filmorate.dataset.films:0}") int films,
+                                  @Value("${filmorate.dataset.likes-per-user:10}") int likesPerUser,
+                                  @Value("${filmorate.dataset.friends-per-user:10}") int friendsPerUser,
+                                  @Value("${filmorate.dataset.skew:1.0}") double skew,
+                                  @Value("${filmorate.dataset.seed:42}") long seed) {
+        this.generator = generator;
+        this.spec = new DatasetGenerator.Spec(users, films, likesPerUser, friendsPerUser, skew, seed);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Генерация синтетических данных: {}", spec);
+        generator.generate(spec);
+    }
+}
@@ -3,18 +3,24 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 import ru.yandex.practicum.filmorate.validators.FilmValidator;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -23,28 +29,66 @@ public class FilmService {
     private final UserService userService;
     private final MpaStorage mpaStorage;
     private final GenreStorage genreStorage;
+    private final LikeWriteBehindQueue likeQueue;
+    private final int maxBatchSize;
 
     @Autowired
-    public FilmService(@Qualifier("FilmDbStorage") FilmStorage filmStorage,
+    public FilmService(@Qualifier("CachingFilmStorage") FilmStorage filmStorage,
                        UserService userService,
                        MpaStorage mpaStorage,
-                       GenreStorage genreStorage) {
+                       GenreStorage genreStorage,
+                       LikeWriteBehindQueue likeQueue,
+                       @Value("${filmorate.films.batch.max-size:10000}") int maxBatchSize) {
         this.filmStorage = filmStorage;
         this.userService = userService;
         this.mpaStorage = mpaStorage;
         this.genreStorage = genreStorage;
+        this.likeQueue = likeQueue;
+        this.maxBatchSize = maxBatchSize;
     }
 
+    @Transactional(readOnly = true)
     public List<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllFilms(consumer);
+    }
+
+    public KeysetPage<Film> getFilmsPage(String sort, String after, Integer limit) {
+        if (limit == null || limit <= 0 || limit > KeysetPage.MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + KeysetPage.MAX_PAGE_SIZE);
+        }
+        FilmSort filmSort = FilmSort.fromParam(sort);
+        KeysetCursor cursor = after == null ? null : KeysetCursor.decode(after, filmSort != FilmSort.ID);
+        List<Film> films = filmStorage.getFilmsPage(filmSort, cursor, limit + 1);
+        return KeysetPage.of(films, limit, filmSort::cursorOf);
+    }
+
     public Film addFilm(Film film) {
         FilmValidator.validate(film);
         validateMpaAndGenres(film);
         return filmStorage.addFilm(film);
     }
 
+    /**
+     * Проверяет весь пакет до записи, поэтому ошибка в любом фильме отклоняет пакет целиком.
+     * Рейтинги и жанры сверяются с кэшем справочников без обращения к БД.
+     */
+    public List<Integer> addFilms(List<Film> films) {
+        if (films == null || films.isEmpty() || films.size() > maxBatchSize) {
+            throw new ValidationException("Размер пакета фильмов должен быть от 1 до " + maxBatchSize);
+        }
+        for (Film film : films) {
+            FilmValidator.validate(film);
+            validateMpaAndGenres(film);
+        }
+        List<Integer> ids = filmStorage.addFilms(films);
+        log.info("Пакетно добавлено {} фильмов", ids.size());
+        return ids;
+    }
+
     public Film updateFilm(Film film) {
         if (!filmStorage.idIsPresent(film.getId())) {
             throw new FilmNotFoundException("Фильм с ID - " + film.getId() + " не найден в базе");
@@ -62,31 +106,112 @@ public class FilmService {
     }
 
     public void addLike(Integer filmID, Integer userID) {
-        if (!filmStorage.idIsPresent(filmID)) {
-            throw new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
-        }
-        if (!userService.checkUserIdInStorage(userID)) {
-            throw new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
+        if (likeQueue.isEnabled()) {
+            checkLikeKeys(filmID, userID);
+            likeQueue.enqueue(filmID, userID, true);
+        } else {
+            filmStorage.addLike(filmID, userID);
         }
-        filmStorage.addLike(filmID, userID);
     }
 
     public void removeLike(Integer filmID, Integer userID) {
+        if (likeQueue.isEnabled()) {
+            checkLikeKeys(filmID, userID);
+            likeQueue.enqueue(filmID, userID, false);
+        } else {
+            filmStorage.removeLike(filmID, userID);
+        }
+    }
+
+    /**
+     * ETag фильма из его версии и версий справочников, входящих в JSON фильма; {@code null}, если фильма нет.
+     * Не обращается к БД для существующего фильма.
+     */
+    public String getFilmETag(Integer id) {
+        if (!filmStorage.idIsPresent(id)) {
+            return null;
+        }
+        return filmStorage.getFilmVersion(id) + "-" + referenceVersions();
+    }
+
+    /**
+     * ETag выдачи популярных фильмов. Параметры проверяются до сравнения версий, чтобы на ошибочный запрос
+     * не пришёл ответ 304.
+     */
+    public String getTopLikedFilmsETag(Integer count, Integer genreID) {
+        validateCount(count);
+        if (genreID != null) {
+            genreStorage.getGenreByID(genreID);
+        }
+        return filmStorage.getCatalogVersion() + "-" + referenceVersions();
+    }
+
+    public List<Film> findTopLikedFilms(Integer count) {
+        return findTopLikedFilms(count, null, null);
+    }
+
+    /**
+     * Читается из основной БД, а не из реплики: ответ отдаётся с ETag из {@link #getTopLikedFilmsETag}, версии
+     * которого меняются сразу после фиксации, и отстающая реплика закрепила бы под новым ETag старые данные.
+     */
+    public List<Film> findTopLikedFilms(Integer count, Integer genreID, Integer year) {
+        validateCount(count);
+        if (genreID != null) {
+            genreStorage.getGenreByID(genreID);
+        }
+        log.info("Запрошен топ фильмов размерностью {}, жанр {}, год {}", count, genreID, year);
+        return filmStorage.findTopLikedFilms(count, genreID, year);
+    }
+
+    public List<Film> searchFilms(String query, Integer count) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не должен быть пустым");
+        }
+        if (count == null || count <= 0 || count > KeysetPage.MAX_PAGE_SIZE) {
+            throw new ValidationException("Количество выводимых фильмов должно быть от 1 до " + KeysetPage.MAX_PAGE_SIZE);
+        }
+        log.info("Запрошен поиск фильмов по строке \"{}\"", query);
+        return filmStorage.searchFilms(query, count);
+    }
+
+    public List<Film> getSimilarFilms(Integer filmID, Integer count) {
+        validateCount(count);
         if (!filmStorage.idIsPresent(filmID)) {
-            throw new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
+            throw new FilmNotFoundException("Фильм с ID - " + filmID + " не найден в базе");
         }
+        return filmStorage.getSimilarFilms(filmID, count);
+    }
+
+    public List<Film> getRecommendations(Integer userID, Integer count) {
+        validateCount(count);
         if (!userService.checkUserIdInStorage(userID)) {
             throw new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
         }
-        filmStorage.removeLike(filmID, userID);
+        log.info("Запрошены рекомендации фильмов для пользователя с ID {}", userID);
+        return filmStorage.getRecommendedFilms(userID, count);
     }
 
-    public List<Film> findTopLikedFilms(Integer count) {
+    private String referenceVersions() {
+        return genreStorage.getVersion() + "-" + mpaStorage.getVersion();
+    }
+
+    private void validateCount(Integer count) {
         if (count == null || count <= 0) {
             throw new ValidationException("Количество выводимых фильмов должно быть больше 0");
         }
-        log.info("Запрошен топ фильмов размерностью {}", count);
-        return filmStorage.findTopLikedFilms(count);
+    }
+
+    /**
+     * Синхронная проверка для отложенной записи: ответ 404 должен прийти сразу, а не потеряться при сбросе очереди.
+     * При синхронной записи то же самое выясняет хранилище по внешним ключам.
+     */
+    private void checkLikeKeys(Integer filmID, Integer userID) {
+        if (!filmStorage.idIsPresent(filmID)) {
+            throw new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
+        }
+        if (!userService.checkUserIdInStorage(userID)) {
+            throw new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
+        }
     }
 
     private void validateMpaAndGenres(Film film) {
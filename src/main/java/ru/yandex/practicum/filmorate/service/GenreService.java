@@ -25,4 +25,11 @@ public class GenreService {
     public Genre getGenreByID(int id) {
         return genreStorage.getGenreByID(id);
     }
+
+    /**
+     * ETag справочника жанров: версия меняется при каждой перезагрузке справочника.
+     */
+    public String getETag() {
+        return String.valueOf(genreStorage.getVersion());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+/**
+ * Сверяет счётчики лайков в films с таблицей likes и исправляет расхождения:
+ * при старте приложения (в том числе после добавления колонки в уже существующую базу) и далее по расписанию.
+ */
+@Component
+@Slf4j
+public class LikeCountReconciliationJob {
+    private final FilmStorage filmStorage;
+
+    @Autowired
+    public LikeCountReconciliationJob(@Qualifier("FilmDbStorage") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${filmorate.likes.reconcile-cron:0 0 4 * * *}")
+    public void reconcile() {
+        int fixedFilms = filmStorage.reconcileLikeCounts();
+        if (fixedFilms > 0) {
+            log.warn("Счётчики лайков разошлись с таблицей likes у {} фильмов, значения пересчитаны", fixedFilms);
+        } else {
+            log.info("Счётчики лайков совпадают с таблицей likes");
+        }
+    }
+}
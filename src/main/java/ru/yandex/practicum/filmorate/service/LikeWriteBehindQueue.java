@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.LikeQueueFullException;
+import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Отложенная запись лайков: изменения копятся в памяти и пишутся в БД пакетами по заполнении
+ * или по таймеру. Для одной пары (фильм, пользователь) в очереди хранится только последнее действие,
+ * поэтому повторные лайки и пары "лайк - снятие" не доходят до БД. Лайк становится виден в выдаче
+ * после ближайшего сброса очереди.
+ * Размер очереди ограничен: если место не освободилось за время ожидания, запрос отклоняется
+ * с {@link LikeQueueFullException}. При остановке приложения очередь сбрасывается полностью.
+ */
+@Component
+@Slf4j
+public class LikeWriteBehindQueue {
+    private final FilmStorage filmStorage;
+    private final boolean enabled;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    private final ConcurrentHashMap<Long, Boolean> pending = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final Counter rejected;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public LikeWriteBehindQueue(@Qualifier("FilmDbStorage") FilmStorage filmStorage,
+                                MeterRegistry meterRegistry,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.flush-size:1000}") int flushSize,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+                                @Value("${filmorate.likes.write-behind.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.filmStorage = filmStorage;
+        this.enabled = enabled;
+        this.capacity = new Semaphore(capacity);
+        this.flushSize = flushSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flushTimer = Timer.builder("filmorate.likes.queue.flush")
+                .description("Время записи пакета лайков из очереди")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("filmorate.likes.queue.rejected")
+                .description("Лайки, отклонённые из-за переполнения очереди")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.likes.queue.depth", pending, ConcurrentHashMap::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-queue-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Отложенная запись лайков включена, сброс каждые {} мс или по {} изменений", flushIntervalMillis, flushSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(int filmId, int userId, boolean liked) {
+        long key = key(filmId, userId);
+        if (pending.replace(key, liked) != null) {
+            return;
+        }
+        try {
+            if (!capacity.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new LikeQueueFullException("Очередь лайков переполнена, повторите запрос позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LikeQueueFullException("Ожидание места в очереди лайков прервано");
+        }
+        if (pending.put(key, liked) != null) {
+            // пару параллельно добавил другой запрос и уже занял под неё место
+            capacity.release();
+        }
+        if (pending.size() >= flushSize && flusher != null && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Записывает в БД все накопленные изменения.
+     *
+     * @return количество фактически изменённых лайков
+     */
+    public synchronized int flush() {
+        flushRequested.set(false);
+        int applied = 0;
+        List<LikeChange> batch = new ArrayList<>(Math.min(flushSize, pending.size()));
+        for (Long key : pending.keySet()) {
+            Boolean liked = pending.remove(key);
+            if (liked == null) {
+                continue;
+            }
+            capacity.release();
+            batch.add(new LikeChange((int) (key >>> 32), (int) (long) key, liked));
+            if (batch.size() == flushSize) {
+                applied += write(batch);
+                batch = new ArrayList<>(flushSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            applied += write(batch);
+        }
+        return applied;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        int applied = flush();
+        if (applied > 0) {
+            log.info("При остановке из очереди записано {} изменений лайков", applied);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Не удалось сбросить очередь лайков", e);
+        }
+    }
+
+    private int write(List<LikeChange> batch) {
+        try {
+            return flushTimer.record(() -> filmStorage.applyLikeChanges(batch));
+        } catch (DataAccessException e) {
+            // фильм или пользователь удалены, пока изменение ждало в очереди, - пакет откатился целиком
+            log.warn("Пакет из {} изменений лайков отклонён БД, запись по одному", batch.size());
+            return writeOneByOne(batch);
+        }
+    }
+
+    private int writeOneByOne(List<LikeChange> batch) {
+        int applied = 0;
+        for (LikeChange change : batch) {
+            try {
+                boolean changed = change.isLiked()
+                        ? filmStorage.addLike(change.getFilmId(), change.getUserId())
+                        : filmStorage.removeLike(change.getFilmId(), change.getUserId());
+                if (changed) {
+                    applied++;
+                }
+            } catch (FilmNotFoundException | UserNotFoundException | DataAccessException e) {
+                log.warn("Изменение лайка фильма {} от пользователя {} отброшено: {}",
+                        change.getFilmId(), change.getUserId(), e.getMessage());
+            }
+        }
+        return applied;
+    }
+
+    private static long key(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+}
@@ -26,4 +26,11 @@ public class MpaService {
     public MPA findMpaByID(int id) {
         return mpaStorage.getMpaByID(id);
     }
+
+    /**
+     * ETag справочника рейтингов: версия меняется при каждой перезагрузке справочника.
+     */
+    public String getETag() {
+        return String.valueOf(mpaStorage.getVersion());
+    }
 }
\ No newline at end of file
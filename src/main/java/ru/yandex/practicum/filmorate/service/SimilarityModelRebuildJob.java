@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+/**
+ * Плановая перестройка модели похожести фильмов: между перестройками модель обновляется приблизительно.
+ */
+@Component
+@Slf4j
+public class SimilarityModelRebuildJob {
+    private final FilmStorage filmStorage;
+
+    @Autowired
+    public SimilarityModelRebuildJob(@Qualifier("FilmDbStorage") FilmStorage filmStorage) {
+        this.filmStorage = filmStorage;
+    }
+
+    @Scheduled(cron = "${filmorate.recommendations.rebuild-cron:0 30 4 * * *}")
+    public void rebuild() {
+        filmStorage.rebuildSimilarityModel();
+        log.info("Модель похожести фильмов перестроена");
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.UserImportError;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Импорт пользователей из файла при запуске приложения, например
+ * {@code java -jar filmorate.jar --filmorate.users.import.file=partner.json}.
+ */
+@Component
+@ConditionalOnProperty("filmorate.users.import.file")
+@Slf4j
+public class UserImportRunner implements ApplicationRunner {
+    private final UserImportService userImportService;
+    private final Path file;
+
+    @Autowired
+    public UserImportRunner(UserImportService userImportService,
+                            @Value("${filmorate.users.import.file}") Path file) {
+        this.userImportService = userImportService;
+        this.file = file;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        log.info("Импорт пользователей из файла {}", file);
+        UserImportReport report;
+        try (InputStream input = Files.newInputStream(file)) {
+            report = userImportService.importUsers(input);
+        }
+        for (UserImportError error : report.getErrors()) {
+            log.warn("Строка {} ({}, {}) не импортирована: {}",
+                    error.getRow(), error.getEmail(), error.getLogin(), error.getMessage());
+        }
+    }
+}
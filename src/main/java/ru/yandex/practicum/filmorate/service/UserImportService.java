@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportError;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.validators.UserValidator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Массовый импорт пользователей из JSON-массива. Вход читается потоково и записывается пакетами,
+ * поэтому размер импорта не ограничен памятью. Строки с ошибками валидации, с полями неверного типа или с уже
+ * занятыми email и логином попадают в отчёт и не прерывают импорт. Останавливает импорт только синтаксическая
+ * ошибка JSON: после неё границы следующих записей уже не определить.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final UserStorage userStorage;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final Counter importedRows;
+    private final Counter failedRows;
+    private final Timer batchTimer;
+    private volatile double lastRowsPerSecond;
+
+    @Autowired
+    public UserImportService(@Qualifier("UserDbStorage") UserStorage userStorage,
+                             ObjectMapper objectMapper,
+                             Validator validator,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.users.import.batch-size:1000}") int batchSize) {
+        this.userStorage = userStorage;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.importedRows = Counter.builder("filmorate.users.import.rows")
+                .tag("result", "imported")
+                .register(meterRegistry);
+        this.failedRows = Counter.builder("filmorate.users.import.rows")
+                .tag("result", "failed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("filmorate.users.import.batch")
+                .description("Время записи одного пакета импортируемых пользователей")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.users.import.throughput", this, service -> service.lastRowsPerSecond)
+                .description("Скорость последнего импорта, строк в секунду")
+                .register(meterRegistry);
+    }
+
+    public UserImportReport importUsers(InputStream input) {
+        long started = System.nanoTime();
+        Progress progress = new Progress();
+        List<User> batch = new ArrayList<>(batchSize);
+        List<Integer> batchRows = new ArrayList<>(batchSize);
+        int row = 0;
+        try (JsonParser parser = objectMapper.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new ValidationException("Ожидается JSON-массив пользователей");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode node = parser.readValueAsTree();
+                User user;
+                try {
+                    user = objectMapper.treeToValue(node, User.class);
+                } catch (JsonProcessingException e) {
+                    progress.reject(row++, null, "Некорректная запись: " + e.getOriginalMessage());
+                    continue;
+                }
+                String error = validate(user);
+                if (error != null) {
+                    progress.reject(row, user, error);
+                } else {
+                    batch.add(user);
+                    batchRows.add(row);
+                    if (batch.size() == batchSize) {
+                        saveBatch(batch, batchRows, progress);
+                    }
+                }
+                row++;
+            }
+        } catch (JsonParseException e) {
+            progress.reject(row, null, "Некорректный JSON, импорт остановлен: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        saveBatch(batch, batchRows, progress);
+
+        long durationMillis = Math.max((System.nanoTime() - started) / 1_000_000, 1);
+        double rowsPerSecond = (progress.imported + progress.failed) * 1000.0 / durationMillis;
+        lastRowsPerSecond = rowsPerSecond;
+        log.info("Импорт пользователей завершён: добавлено {}, отклонено {}, {} мс, {} строк/с",
+                progress.imported, progress.failed, durationMillis, Math.round(rowsPerSecond));
+        return new UserImportReport(progress.imported, progress.failed, progress.errors, durationMillis, rowsPerSecond);
+    }
+
+    private String validate(User user) {
+        Set<ConstraintViolation<User>> violations = validator.validate(user);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(" "));
+        }
+        try {
+            UserValidator.validate(user);
+        } catch (ValidationException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private void saveBatch(List<User> batch, List<Integer> batchRows, Progress progress) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Integer, String> rejected;
+        try {
+            rejected = batchTimer.record(() -> userStorage.addUsers(batch));
+        } catch (DuplicateKeyException e) {
+            // email или логин заняли параллельно между проверкой и вставкой, пакет откатился целиком
+            log.debug("Пакет импорта пользователей отклонён БД, повтор по одной записи");
+            rejected = addOneByOne(batch);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String error = rejected.get(i);
+            if (error != null) {
+                progress.reject(batchRows.get(i), batch.get(i), error);
+            } else {
+                progress.imported++;
+                importedRows.increment();
+            }
+        }
+        batch.clear();
+        batchRows.clear();
+    }
+
+    private Map<Integer, String> addOneByOne(List<User> batch) {
+        Map<Integer, String> rejected = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                userStorage.addUser(batch.get(i));
+            } catch (DuplicateKeyException e) {
+                rejected.put(i, "Пользователь с таким email или логином уже существует");
+            }
+        }
+        return rejected;
+    }
+
+    private final class Progress {
+        private final List<UserImportError> errors = new ArrayList<>();
+        private int imported;
+        private int failed;
+
+        private void reject(int row, User user, String message) {
+            failed++;
+            failedRows.increment();
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(user == null
+                        ? new UserImportError(row, null, null, message)
+                        : new UserImportError(row, user.getEmail(), user.getLogin(), message));
+            }
+        }
+    }
+}
@@ -3,22 +3,48 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSort;
+import ru.yandex.practicum.filmorate.storage.StorageContextPropagator;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggester;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import ru.yandex.practicum.filmorate.validators.UserValidator;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class UserService {
     private final UserStorage userStorage;
+    private final FriendSuggester friendSuggester;
+    private final StorageContextPropagator storageContext;
+    private final Executor taskExecutor;
+    private final TransactionTemplate readOnlyTransaction;
 
     @Autowired
-    public UserService(@Qualifier("UserDbStorage") UserStorage storage) {
+    public UserService(@Qualifier("UserDbStorage") UserStorage storage,
+                       FriendSuggester friendSuggester,
+                       StorageContextPropagator storageContext,
+                       @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor taskExecutor,
+                       PlatformTransactionManager transactionManager) {
         this.userStorage = storage;
+        this.friendSuggester = friendSuggester;
+        this.storageContext = storageContext;
+        this.taskExecutor = taskExecutor;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     public User addUser(User user) {
@@ -35,6 +61,20 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
+    public void streamAllUsers(Consumer<User> consumer) {
+        userStorage.streamAllUsers(consumer);
+    }
+
+    public KeysetPage<User> getUsersPage(String sort, String after, Integer limit) {
+        if (limit == null || limit <= 0 || limit > KeysetPage.MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + KeysetPage.MAX_PAGE_SIZE);
+        }
+        UserSort userSort = UserSort.fromParam(sort);
+        KeysetCursor cursor = after == null ? null : KeysetCursor.decode(after, userSort != UserSort.ID);
+        List<User> users = userStorage.getUsersPage(userSort, cursor, limit + 1);
+        return KeysetPage.of(users, limit, userSort::cursorOf);
+    }
+
     public User getUserByID(int id) {
         return userStorage.findUserByID(id);
     }
@@ -49,6 +89,7 @@ public class UserService {
         log.info("Пользователь с ID {} удалил из друзей пользователя с ID {}", userID, friendID);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getFriendsOfUser(int userID) {
         if (!userStorage.idIsPresent(userID)) {
             throw new UserNotFoundException("Пользователь с ID " + userID + " не найден в базе");
@@ -57,11 +98,30 @@ public class UserService {
         return userStorage.getFriendsOfUser(userID);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getFriendsCrossing(int userID, int anotherUserID) {
         log.info("Запрошен список общих друзей у пользователей ID {} и {}", userID, anotherUserID);
         return userStorage.getFriendsCrossing(userID, anotherUserID);
     }
 
+    /**
+     * Рекомендации рассчитываются в пуле {@link FriendSuggester}, размер которого рассчитан на работу процессора,
+     * поэтому пользователи загружаются из БД не в нём, а в общем пуле задач приложения - в контексте запроса:
+     * с учётом в бюджете SQL-запросов эндпоинта и с чтением из реплики, как у остальных чтений.
+     */
+    public CompletableFuture<List<User>> getFriendSuggestions(int userID, Integer limit) {
+        if (limit == null || limit <= 0 || limit > FriendSuggester.MAX_SUGGESTIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + FriendSuggester.MAX_SUGGESTIONS);
+        }
+        if (!userStorage.idIsPresent(userID)) {
+            throw new UserNotFoundException("Пользователь с ID " + userID + " не найден в базе");
+        }
+        log.info("Запрошены рекомендации друзей для пользователя с ID {}", userID);
+        return friendSuggester.suggest(userID, limit).thenApplyAsync(
+                ids -> readOnlyTransaction.execute(status -> userStorage.getUsersByIds(ids)),
+                storageContext.bind(taskExecutor));
+    }
+
     public boolean checkUserIdInStorage(Integer id) {
         log.info("Запрошена проверка ID {} в базе пользователей", id);
         return userStorage.idIsPresent(id);
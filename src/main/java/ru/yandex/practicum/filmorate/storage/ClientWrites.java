@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import java.time.Duration;
+
+/**
+ * Время последней записи каждого клиента для чтения своих записей: пока реплика не догнала запись клиента,
+ * его чтения идут в основную БД. Для клиента считается число незавершённых запросов на изменение: пока оно
+ * больше нуля, клиент читает из основной БД, время записи обновляется при завершении каждого такого запроса,
+ * то есть не раньше фиксации транзакции. Завершённую запись достаточно хранить дольше допустимого отставания
+ * реплики: позже реплика либо уже содержит запись, либо отстаёт сильнее и чтения и так идут в основную БД.
+ * Клиент с незавершёнными записями по времени не вытесняется.
+ */
+public class ClientWrites {
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final ThreadLocal<String> currentClient = new ThreadLocal<>();
+    private final Cache<String, ClientState> clients;
+
+    ClientWrites(long maxClients, Duration retention) {
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfter(new RetainWhileWriting(retention.toNanos()))
+                .build();
+    }
+
+    /**
+     * Привязывает клиента к текущему потоку; {@code null} - клиент не представился.
+     */
+    public void begin(String clientId, boolean write) {
+        if (clientId == null) {
+            currentClient.remove();
+            return;
+        }
+        currentClient.set(clientId);
+        if (write) {
+            clients.asMap().compute(clientId, (id, state) -> state == null
+                    ? new ClientState(1, NEVER)
+                    : new ClientState(state.inFlight() + 1, state.lastWrite()));
+        }
+    }
+
+    public void end(String clientId, boolean write) {
+        currentClient.remove();
+        if (clientId != null && write) {
+            long now = System.nanoTime();
+            clients.asMap().compute(clientId, (id, state) ->
+                    new ClientState(state == null ? 0 : Math.max(0, state.inFlight() - 1), now));
+        }
+    }
+
+    /**
+     * Клиент текущего потока; {@code null}, если клиент не представился.
+     */
+    public String currentClient() {
+        return currentClient.get();
+    }
+
+    /**
+     * Отвязывает клиента от потока, не отмечая запись: запрос продолжится асинхронно в другом потоке.
+     */
+    public void detach() {
+        currentClient.remove();
+    }
+
+    /**
+     * Писал ли клиент текущего потока после отметки {@code replicatedAt} или пишет прямо сейчас.
+     */
+    boolean wroteAfter(long replicatedAt) {
+        String clientId = currentClient.get();
+        if (clientId == null) {
+            return false;
+        }
+        ClientState state = clients.getIfPresent(clientId);
+        return state != null && (state.inFlight() > 0
+                || state.lastWrite() != NEVER && state.lastWrite() - replicatedAt >= 0);
+    }
+
+    private record ClientState(int inFlight, long lastWrite) {
+    }
+
+    private record RetainWhileWriting(long retentionNanos) implements Expiry<String, ClientState> {
+        @Override
+        public long expireAfterCreate(String clientId, ClientState state, long currentTime) {
+            return state.inFlight() > 0 ? Long.MAX_VALUE : retentionNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String clientId, ClientState state, long currentTime, long currentDuration) {
+            return expireAfterCreate(clientId, state, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String clientId, ClientState state, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число одновременно открытых соединений семафором перед пулом. С виртуальными потоками
+ * запросов может быть сколько угодно, и без такого ограничения всплеск нагрузки целиком встаёт в очередь пула
+ * и получает отказы по его таймауту. Ожидание на семафоре честное и не занимает поток-носитель; если разрешение
+ * не получено за {@code filmorate.jdbc.gate.timeout}, бросается {@link SQLTransientConnectionException}.
+ * Время ожидания пишется в таймер {@code filmorate.jdbc.gate.wait}, число ждущих - в
+ * {@code filmorate.jdbc.gate.waiting}.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.jdbc.gate.enabled")
+public class ConnectionGatePostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final int permits;
+    private final Duration timeout;
+    private final List<GatedDataSource> dataSources = new ArrayList<>();
+
+    public ConnectionGatePostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                       @Value("${filmorate.jdbc.gate.permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+                                       @Value("${filmorate.jdbc.gate.timeout:30s}") Duration timeout) {
+        this.meterRegistry = meterRegistry;
+        this.permits = permits;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof GatedDataSource)) {
+            GatedDataSource gated = new GatedDataSource(dataSource, permits, timeout);
+            dataSources.add(gated);
+            return gated;
+        }
+        return bean;
+    }
+
+    /**
+     * Метрики регистрируются до конца запуска, пока контекст открыт: DataSource может пережить свой контекст,
+     * как в тестах с пересозданием контекста.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        MeterRegistry registry = meterRegistry.getObject();
+        dataSources.forEach(dataSource -> dataSource.bindTo(registry));
+    }
+
+    private static final class GatedDataSource extends DelegatingDataSource {
+        private final Semaphore semaphore;
+        private final int permits;
+        private final long timeoutNanos;
+        private volatile Timer waitTimer;
+
+        GatedDataSource(DataSource target, int permits, Duration timeout) {
+            super(target);
+            this.semaphore = new Semaphore(permits, true);
+            this.permits = permits;
+            this.timeoutNanos = timeout.toNanos();
+        }
+
+        void bindTo(MeterRegistry registry) {
+            waitTimer = Timer.builder("filmorate.jdbc.gate.wait")
+                    .description("Ожидание разрешения на соединение с БД")
+                    .register(registry);
+            Gauge.builder("filmorate.jdbc.gate.waiting", semaphore, Semaphore::getQueueLength)
+                    .description("Потоки, ждущие разрешения на соединение с БД")
+                    .register(registry);
+            Gauge.builder("filmorate.jdbc.gate.active", semaphore, gate -> permits - gate.availablePermits())
+                    .description("Соединения с БД, выданные через ограничитель")
+                    .register(registry);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            try {
+                return gated(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                semaphore.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            try {
+                return gated(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                semaphore.release();
+                throw e;
+            }
+        }
+
+        private void acquire() throws SQLException {
+            long started = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = semaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Ожидание соединения с БД прервано", e);
+            }
+            Timer timer = waitTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            if (!acquired) {
+                throw new SQLTransientConnectionException("Нет свободного соединения с БД за "
+                        + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " мс, ожидают " + semaphore.getQueueLength());
+            }
+        }
+
+        private Connection gated(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ReleasingHandler(connection, semaphore));
+        }
+    }
+
+    /**
+     * Возвращает разрешение при первом закрытии соединения; повторное закрытие разрешений не добавляет.
+     */
+    private static final class ReleasingHandler implements InvocationHandler {
+        private final Connection target;
+        private final Semaphore semaphore;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingHandler(Connection target, Semaphore semaphore) {
+            this.target = target;
+            this.semaphore = semaphore;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                    semaphore.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Заполняет базу синтетическими пользователями, фильмами, лайками и дружбами для нагрузочных испытаний.
+ * Число лайков и друзей у пользователя распределено по Парето, выбор фильма и друга - по Ципфу:
+ * немногие фильмы и пользователи собирают большую часть связей. Данные пишутся во временные CSV-файлы
+ * и загружаются одним INSERT ... SELECT FROM CSVREAD на таблицу, без построчных запросов.
+ * Новые записи добавляются к уже существующим, после загрузки перестраиваются счётчики и индексы в памяти.
+ */
+@Component
+@Slf4j
+public class DatasetGenerator {
+    private static final int GENRES = 6;
+    private static final int MPA_RATINGS = 5;
+    /**
+     * Показатель распределения Парето для числа связей пользователя.
+     */
+    private static final double PARETO_SHAPE = 1.5;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @Autowired
+    public DatasetGenerator(JdbcTemplate jdbcTemplate, FilmDbStorage filmStorage, UserDbStorage userStorage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+    }
+
+    public Result generate(Spec spec) {
+        long started = System.nanoTime();
+        Path directory = null;
+        try {
+            directory = Files.createTempDirectory("filmorate-dataset");
+            SplittableRandom random = new SplittableRandom(spec.seed());
+            int[] userIds = loadUsers(directory, spec, random);
+            int[] filmIds = loadFilms(directory, spec, random);
+            long likes = loadPairs(directory.resolve("likes.csv"), "film_id,user_id",
+                    "INSERT INTO likes (film_id, user_id) ", userIds, filmIds, spec.likesPerUser(), spec.skew(), random, false);
+            long friendships = loadPairs(directory.resolve("friendship.csv"), "user_id,friend_id",
+                    "INSERT INTO friendship (user_id, friend_id) ", userIds, userIds, spec.friendsPerUser(), spec.skew(), random, true);
+
+            filmStorage.reconcileLikeCounts();
+            filmStorage.init();
+            userStorage.init();
+            Result result = new Result(userIds.length, filmIds.length, likes, friendships,
+                    (System.nanoTime() - started) / 1_000_000);
+            log.info("Сгенерированы данные: {}", result);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(directory);
+        }
+    }
+
+    private int[] loadUsers(Path directory, Spec spec, SplittableRandom random) throws IOException {
+        int firstId = maxId("users") + 1;
+        Path file = directory.resolve("users.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("email,login,name,birthday\n");
+            for (int i = 0; i < spec.users(); i++) {
+                String login = "gen" + firstId + "_" + i;
+                writer.write(login + "@example.com," + login + ",Пользователь " + i + ","
+                        + LocalDate.of(1950 + random.nextInt(60), 1 + random.nextInt(12), 1 + random.nextInt(28)) + "\n");
+            }
+        }
+        bulkInsert("INSERT INTO users (email, login, name, birthday) ", file,
+                "email, login, name, CAST(birthday AS DATE)");
+        return newIds("users", firstId);
+    }
+
+    private int[] loadFilms(Path directory, Spec spec, SplittableRandom random) throws IOException {
+        int firstId = maxId("films") + 1;
+        Path file = directory.resolve("films.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("name,description,release_date,duration,mpa_id\n");
+            for (int i = 0; i < spec.films(); i++) {
+                writer.write("Фильм " + i + ",Описание синтетического фильма " + i + ","
+                        + LocalDate.of(1900 + random.nextInt(125), 1 + random.nextInt(12), 1 + random.nextInt(28)) + ","
+                        + (60 + random.nextInt(120)) + "," + (1 + random.nextInt(MPA_RATINGS)) + "\n");
+            }
+        }
+        bulkInsert("INSERT INTO films (name, description, release_date, duration, mpa_id) ", file,
+                "name, description, CAST(release_date AS DATE), CAST(duration AS INT), CAST(mpa_id AS INT)");
+        int[] filmIds = newIds("films", firstId);
+
+        Path genres = directory.resolve("film_genres.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(genres, StandardCharsets.UTF_8)) {
+            writer.write("film_id,genre_id\n");
+            for (int filmId : filmIds) {
+                int first = 1 + random.nextInt(GENRES);
+                writer.write(filmId + "," + first + "\n");
+                if (random.nextInt(3) == 0) {
+                    writer.write(filmId + "," + (1 + first % GENRES) + "\n");
+                }
+            }
+        }
+        bulkInsert("INSERT INTO film_genres (film_id, genre_id) ", genres, "CAST(film_id AS INT), CAST(genre_id AS INT)");
+        return filmIds;
+    }
+
+    /**
+     * Для каждого пользователя выбирает различные цели, число которых распределено по Парето со средним
+     * {@code meanPerUser}, и загружает пары одним запросом.
+     *
+     * @param userFirst пользователь в первой колонке (дружба) или во второй (лайк)
+     * @return количество загруженных пар
+     */
+    private long loadPairs(Path file, String header, String insert, int[] userIds, int[] targetIds, int meanPerUser,
+                           double skew, SplittableRandom random, boolean userFirst) throws IOException {
+        if (meanPerUser <= 0 || targetIds.length == 0) {
+            return 0;
+        }
+        long pairs = 0;
+        double minimum = meanPerUser * (PARETO_SHAPE - 1) / PARETO_SHAPE;
+        int[] chosen = new int[targetIds.length];
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(header + "\n");
+            for (int userId : userIds) {
+                int wanted = (int) Math.min(targetIds.length - 1, minimum / Math.pow(1 - random.nextDouble(), 1 / PARETO_SHAPE));
+                int count = 0;
+                for (int attempt = 0; attempt < wanted * 2 && count < wanted; attempt++) {
+                    int targetId = targetIds[zipfIndex(random, targetIds.length, skew)];
+                    if (targetId != userId) {
+                        chosen[count++] = targetId;
+                    }
+                }
+                Arrays.sort(chosen, 0, count);
+                for (int i = 0; i < count; i++) {
+                    if (i > 0 && chosen[i] == chosen[i - 1]) {
+                        continue;
+                    }
+                    writer.write(userFirst ? userId + "," + chosen[i] + "\n" : chosen[i] + "," + userId + "\n");
+                    pairs++;
+                }
+            }
+        }
+        bulkInsert(insert, file, "CAST(" + header.replace(",", " AS INT), CAST(") + " AS INT)");
+        return pairs;
+    }
+
+    /**
+     * Индекс от 0 до {@code size - 1} по закону Ципфа с показателем {@code skew}: обращение непрерывной
+     * функции распределения, индекс 0 самый частый.
+     */
+    static int zipfIndex(SplittableRandom random, int size, double skew) {
+        double uniform = random.nextDouble();
+        double value;
+        if (Math.abs(skew - 1) < 1e-9) {
+            value = Math.pow(size + 1, uniform);
+        } else {
+            double exponent = 1 - skew;
+            value = Math.pow((Math.pow(size + 1, exponent) - 1) * uniform + 1, 1 / exponent);
+        }
+        return Math.min(size - 1, (int) value - 1);
+    }
+
+    /**
+     * H2 разбирает CSVREAD при подготовке запроса, поэтому путь к файлу подставляется литералом, а не параметром.
+     */
+    private void bulkInsert(String insert, Path file, String columns) {
+        String path = file.toAbsolutePath().toString().replace("'", "''");
+        int rows = jdbcTemplate.update(insert + "SELECT " + columns + " FROM CSVREAD('" + path + "', NULL, 'charset=UTF-8')");
+        log.debug("Из {} загружено {} строк", file.getFileName(), rows);
+    }
+
+    private int maxId(String table) {
+        Integer max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Integer.class);
+        return max == null ? 0 : max;
+    }
+
+    private int[] newIds(String table, int firstId) {
+        List<Integer> ids = jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id >= ? ORDER BY id",
+                Integer.class, firstId);
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void deleteQuietly(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить временные файлы генератора в {}", directory, e);
+        }
+    }
+
+    /**
+     * Параметры генерации.
+     *
+     * @param likesPerUser   среднее число лайков на пользователя
+     * @param friendsPerUser среднее число друзей на пользователя
+     * @param skew           показатель закона Ципфа для популярности фильмов и пользователей, обычно около 1
+     */
+    public record Spec(int users, int films, int likesPerUser, int friendsPerUser, double skew, long seed) {
+    }
+
+    public record Result(int users, int films, long likes, long friendships, long durationMillis) {
+    }
+}
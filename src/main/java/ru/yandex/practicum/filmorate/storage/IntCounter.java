@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Счётчик int -> int с открытой адресацией для подсчёта без упаковки в Integer.
+ * Нулевой счётчик означает свободную ячейку, поэтому приращения должны быть положительными.
+ */
+public final class IntCounter {
+    private int[] keys = new int[16];
+    private int[] counts = new int[16];
+    private int size;
+
+    public void add(int key, int delta) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (counts[slot] != 0) {
+            counts[slot] += delta;
+            return;
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * @return счётчик ключа или 0, если ключ не встречался
+     */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (counts[slot] != 0) {
+            if (keys[slot] == key) {
+                return counts[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (counts[slot] != 0) {
+                consumer.accept(keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Ключи с наибольшими счётчиками, при равенстве - с меньшим ключом.
+     */
+    public int[] top(int limit) {
+        long[] ranked = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (counts[slot] != 0) {
+                // по возрастанию: больший счётчик, затем меньший ключ дают меньшее значение
+                ranked[count++] = ((long) (Integer.MAX_VALUE - counts[slot]) << 32) | (keys[slot] & 0xFFFFFFFFL);
+            }
+        }
+        Arrays.sort(ranked);
+        int[] top = new int[Math.min(limit, count)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = (int) ranked[i];
+        }
+        return top;
+    }
+
+    public static IntCounter merge(IntCounter first, IntCounter second) {
+        IntCounter larger = first.size >= second.size ? first : second;
+        IntCounter smaller = larger == first ? second : first;
+        for (int slot = 0; slot < smaller.keys.length; slot++) {
+            if (smaller.counts[slot] != 0) {
+                larger.add(smaller.keys[slot], smaller.counts[slot]);
+            }
+        }
+        return larger;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldCounts[slot] != 0) {
+                add(oldKeys[slot], oldCounts[slot]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int count);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Метрики JDBC-запросов одного DataSource, см. {@link JdbcMetricsPostProcessor}. Счётчики создаются один раз,
+ * запись в них не выделяет памяти.
+ */
+final class JdbcMeters {
+    enum Kind {
+        QUERY, UPDATE, BATCH, EXECUTE
+    }
+
+    private final Timer[] success = new Timer[Kind.values().length];
+    private final Timer[] error = new Timer[Kind.values().length];
+    private final DistributionSummary[] rows = new DistributionSummary[Kind.values().length];
+
+    JdbcMeters(MeterRegistry registry) {
+        for (Kind kind : Kind.values()) {
+            String tag = kind.name().toLowerCase(Locale.ROOT);
+            success[kind.ordinal()] = timer(registry, tag, "success");
+            error[kind.ordinal()] = timer(registry, tag, "error");
+            rows[kind.ordinal()] = DistributionSummary.builder("filmorate.jdbc.rows")
+                    .description("Строки, прочитанные запросом или изменённые обновлением")
+                    .baseUnit("rows")
+                    .tag("kind", tag)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Записывает время запроса, начатого в {@code started} по {@link System#nanoTime()}, и засчитывает запрос
+     * в открытые {@link SqlStatementScope} текущего потока.
+     */
+    void record(Kind kind, long started, boolean succeeded) {
+        long elapsed = System.nanoTime() - started;
+        (succeeded ? success : error)[kind.ordinal()].record(elapsed, TimeUnit.NANOSECONDS);
+        SqlStatementScope.record(elapsed);
+    }
+
+    void read(long readRows) {
+        rows[Kind.QUERY.ordinal()].record(readRows);
+    }
+
+    int updated(Kind kind, int updatedRows) {
+        rows[kind.ordinal()].record(updatedRows);
+        return updatedRows;
+    }
+
+    long updated(Kind kind, long updatedRows) {
+        rows[kind.ordinal()].record(updatedRows);
+        return updatedRows;
+    }
+
+    /**
+     * Отрицательные элементы пакета - признаки вроде {@link java.sql.Statement#SUCCESS_NO_INFO}, а не строки.
+     */
+    int[] updated(Kind kind, int[] batch) {
+        long total = 0;
+        for (int updatedRows : batch) {
+            if (updatedRows > 0) {
+                total += updatedRows;
+            }
+        }
+        rows[kind.ordinal()].record(total);
+        return batch;
+    }
+
+    long[] updated(Kind kind, long[] batch) {
+        long total = 0;
+        for (long updatedRows : batch) {
+            if (updatedRows > 0) {
+                total += updatedRows;
+            }
+        }
+        rows[kind.ordinal()].record(total);
+        return batch;
+    }
+
+    private static Timer timer(MeterRegistry registry, String kind, String outcome) {
+        return Timer.builder("filmorate.jdbc.statements")
+                .description("Время выполнения JDBC-запроса")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Оборачивает DataSource и считает JDBC-запросы: таймер {@code filmorate.jdbc.statements} с тегами {@code kind}
+ * (query, update, batch, execute) и {@code outcome}, распределение {@code filmorate.jdbc.rows} - строки,
+ * прочитанные из результата запроса (kind=query) и изменённые обновлением или пакетом (kind=update, batch).
+ * Прочитанные строки накапливаются в счётчике результата и записываются один раз при его закрытии.
+ * Метрики регистрируются при первом соединении, поэтому обёртка не требует реестра при создании DataSource.
+ * Каждый запрос также засчитывается в открытые {@link SqlStatementScope} текущего потока. Обёртки соединения,
+ * запросов и результата - обычные классы с прямыми вызовами, а не {@link java.lang.reflect.Proxy}: чтение каждого
+ * столбца каждой строки идёт через них, и отражение с упаковкой аргументов стоило бы на каждом вызове.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.metrics.jdbc.enabled", matchIfMissing = true)
+public class JdbcMetricsPostProcessor implements BeanPostProcessor, SmartInitializingSingleton {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final List<MeteredDataSource> dataSources = new ArrayList<>();
+
+    public JdbcMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof MeteredDataSource)) {
+            MeteredDataSource metered = new MeteredDataSource(dataSource, meterRegistry);
+            dataSources.add(metered);
+            return metered;
+        }
+        return bean;
+    }
+
+    /**
+     * Метрики создаются до конца запуска, пока контекст открыт: DataSource может пережить свой контекст,
+     * как в тестах с пересозданием контекста, и тогда достать реестр из закрытого контекста уже нельзя.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        dataSources.forEach(MeteredDataSource::meters);
+    }
+
+    private static final class MeteredDataSource extends DelegatingDataSource {
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private volatile JdbcMeters meters;
+
+        MeteredDataSource(DataSource target, ObjectProvider<MeterRegistry> meterRegistry) {
+            super(target);
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return new MeteredConnection(super.getConnection(), meters());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return new MeteredConnection(super.getConnection(username, password), meters());
+        }
+
+        /**
+         * Без блокировки: при гонке метрики зарегистрируются дважды, но реестр вернёт те же самые.
+         */
+        private JdbcMeters meters() {
+            JdbcMeters current = meters;
+            if (current == null) {
+                current = new JdbcMeters(meterRegistry.getObject());
+                meters = current;
+            }
+            return current;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import ru.yandex.practicum.filmorate.storage.JdbcMeters.Kind;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * Запрос, учитывающий в {@link JdbcMeters} время выполнения и изменённые строки, а результат отдающий
+ * через {@link MeteredResultSet}. Остальные методы - прямые вызовы запроса.
+ */
+class MeteredStatement<S extends Statement> implements Statement {
+    final S statement;
+    final JdbcMeters meters;
+
+    MeteredStatement(S statement, JdbcMeters meters) {
+        this.statement = statement;
+        this.meters = meters;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return statement.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return statement.isWrapperFor(iface);
+    }
+
+    @Override
+    public ResultSet executeQuery(String sql) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            ResultSet result = statement.executeQuery(sql);
+            success = true;
+            return new MeteredResultSet(result, meters);
+        } finally {
+            meters.record(Kind.QUERY, started, success);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = statement.executeUpdate(sql);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        statement.close();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return statement.getMaxFieldSize();
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        statement.setMaxFieldSize(max);
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return statement.getMaxRows();
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        statement.setMaxRows(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        statement.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return statement.getQueryTimeout();
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        statement.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        statement.cancel();
+    }
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return statement.getWarnings();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        statement.clearWarnings();
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        statement.setCursorName(name);
+    }
+
+    @Override
+    public boolean execute(String sql) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = statement.execute(sql);
+            success = true;
+            return result;
+        } finally {
+            meters.record(Kind.EXECUTE, started, success);
+        }
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        ResultSet resultSet = statement.getResultSet();
+        return resultSet == null ? null : new MeteredResultSet(resultSet, meters);
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return statement.getUpdateCount();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return statement.getMoreResults();
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        statement.setFetchDirection(direction);
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return statement.getFetchDirection();
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        statement.setFetchSize(rows);
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return statement.getFetchSize();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return statement.getResultSetConcurrency();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return statement.getResultSetType();
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        statement.addBatch(sql);
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        statement.clearBatch();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            int[] result = statement.executeBatch();
+            success = true;
+            return meters.updated(Kind.BATCH, result);
+        } finally {
+            meters.record(Kind.BATCH, started, success);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return statement.getConnection();
+    }
+
+    @Override
+    public boolean getMoreResults(int current) throws SQLException {
+        return statement.getMoreResults(current);
+    }
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return statement.getGeneratedKeys();
+    }
+
+    @Override
+    public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = statement.executeUpdate(sql, autoGeneratedKeys);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = statement.executeUpdate(sql, columnIndexes);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            int result = statement.executeUpdate(sql, columnNames);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = statement.execute(sql, autoGeneratedKeys);
+            success = true;
+            return result;
+        } finally {
+            meters.record(Kind.EXECUTE, started, success);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = statement.execute(sql, columnIndexes);
+            success = true;
+            return result;
+        } finally {
+            meters.record(Kind.EXECUTE, started, success);
+        }
+    }
+
+    @Override
+    public boolean execute(String sql, String[] columnNames) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            boolean result = statement.execute(sql, columnNames);
+            success = true;
+            return result;
+        } finally {
+            meters.record(Kind.EXECUTE, started, success);
+        }
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return statement.getResultSetHoldability();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return statement.isClosed();
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        statement.setPoolable(poolable);
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return statement.isPoolable();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        statement.closeOnCompletion();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return statement.isCloseOnCompletion();
+    }
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return statement.getLargeUpdateCount();
+    }
+
+    @Override
+    public void setLargeMaxRows(long max) throws SQLException {
+        statement.setLargeMaxRows(max);
+    }
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return statement.getLargeMaxRows();
+    }
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            long[] result = statement.executeLargeBatch();
+            success = true;
+            return meters.updated(Kind.BATCH, result);
+        } finally {
+            meters.record(Kind.BATCH, started, success);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            long result = statement.executeLargeUpdate(sql);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            long result = statement.executeLargeUpdate(sql, autoGeneratedKeys);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            long result = statement.executeLargeUpdate(sql, columnIndexes);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+        long started = System.nanoTime();
+        boolean success = false;
+        try {
+            long result = statement.executeLargeUpdate(sql, columnNames);
+            success = true;
+            return meters.updated(Kind.UPDATE, result);
+        } finally {
+            meters.record(Kind.UPDATE, started, success);
+        }
+    }
+
+    @Override
+    public String enquoteLiteral(String val) throws SQLException {
+        return statement.enquoteLiteral(val);
+    }
+
+    @Override
+    public String enquoteIdentifier(String identifier, boolean alwaysQuote) throws SQLException {
+        return statement.enquoteIdentifier(identifier, alwaysQuote);
+    }
+
+    @Override
+    public boolean isSimpleIdentifier(String identifier) throws SQLException {
+        return statement.isSimpleIdentifier(identifier);
+    }
+
+    @Override
+    public String enquoteNCharLiteral(String val) throws SQLException {
+        return statement.enquoteNCharLiteral(val);
+    }
+}
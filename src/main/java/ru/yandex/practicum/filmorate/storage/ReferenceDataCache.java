@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Кэш небольшого справочника (рейтинги MPA, жанры), целиком загружаемого в память.
+ * Чтение идёт из неизменяемого снимка без обращения к БД, снимок заменяется только явным вызовом {@link #refresh()}.
+ * Каждая перезагрузка получает новую версию, по которой строится ETag справочника.
+ */
+@Slf4j
+public class ReferenceDataCache<T> implements MeterBinder {
+    private final String name;
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(List.of(), Map.of(), 0);
+
+    public ReferenceDataCache(String name, Supplier<List<T>> loader, ToIntFunction<T> idExtractor) {
+        this.name = name;
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    public T get(int id) {
+        T value = snapshot.byId().get(id);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    public List<T> getAll() {
+        hits.increment();
+        return snapshot.all();
+    }
+
+    public void refresh() {
+        List<T> loaded = List.copyOf(loader.get());
+        Map<Integer, T> byId = new HashMap<>();
+        for (T value : loaded) {
+            byId.put(idExtractor.applyAsInt(value), value);
+        }
+        snapshot = new Snapshot<>(loaded, Collections.unmodifiableMap(byId), VersionStamp.next(snapshot.version()));
+        log.debug("Справочник {} перезагружен, записей {}", name, loaded.size());
+    }
+
+    public long getVersion() {
+        return snapshot.version();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.reference.cache.hits", this, ReferenceDataCache::getHitCount)
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("filmorate.reference.cache.misses", this, ReferenceDataCache::getMissCount)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("filmorate.reference.cache.size", this, cache -> cache.snapshot.all().size())
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private record Snapshot<T>(List<T> all, Map<Integer, T> byId, long version) {
+    }
+}
@@ -0,0 +1,196 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Делит запросы между основной БД и репликой для чтения: соединения транзакций {@code readOnly} идут в реплику,
+ * остальные - в основную БД. Чтение тоже уходит в основную БД, если реплика отстаёт больше
+ * {@code filmorate.replica.max-lag} или клиент ещё не видит на реплике свою последнюю запись ({@link ClientWrites}).
+ * Соединение берётся лениво, при первом запросе, когда признак транзакции уже известен.
+ * Реплика - отдельная H2, которую заполняет {@link ReplicaSynchronizer}. Обёртка ставится раньше остальных
+ * обёрток DataSource, поэтому метрики JDBC и ограничитель соединений видят запросы к обеим БД.
+ * Маршруты считает счётчик {@code filmorate.datasource.routes} с тегами {@code target} и {@code reason},
+ * отставание реплики - {@code filmorate.replica.lag}.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.replica.enabled")
+public class ReplicaRoutingPostProcessor implements BeanPostProcessor, SmartInitializingSingleton, DisposableBean,
+        Ordered {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+    private final Duration syncInterval;
+    private final int syncBatchSize;
+    private final long maxLagNanos;
+    private final ClientWrites clientWrites;
+    private HikariDataSource replica;
+    private ReplicaSynchronizer synchronizer;
+    private ReplicaRoutingDataSource routing;
+
+    public ReplicaRoutingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry,
+                                       @Value("${filmorate.replica.url:jdbc:h2:mem:filmorate-replica;DB_CLOSE_DELAY=-1}") String url,
+                                       @Value("${filmorate.replica.username:${spring.datasource.username:sa}}") String username,
+                                       @Value("${filmorate.replica.password:${spring.datasource.password:}}") String password,
+                                       @Value("${filmorate.replica.pool-size:10}") int poolSize,
+                                       @Value("${filmorate.replica.sync-interval:200ms}") Duration syncInterval,
+                                       @Value("${filmorate.replica.sync-batch-size:10000}") int syncBatchSize,
+                                       @Value("${filmorate.replica.max-lag:2s}") Duration maxLag,
+                                       @Value("${filmorate.replica.clients.max-size:100000}") long maxClients) {
+        this.meterRegistry = meterRegistry;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.syncInterval = syncInterval;
+        this.syncBatchSize = syncBatchSize;
+        this.maxLagNanos = maxLag.toNanos();
+        this.clientWrites = new ClientWrites(maxClients, maxLag.multipliedBy(2));
+    }
+
+    public ClientWrites getClientWrites() {
+        return clientWrites;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource primary) || routing != null) {
+            return bean;
+        }
+        replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(url);
+        replica.setUsername(username);
+        replica.setPassword(password);
+        replica.setMaximumPoolSize(poolSize);
+        synchronizer = new ReplicaSynchronizer(primary, replica, syncInterval, syncBatchSize);
+        routing = new ReplicaRoutingDataSource(primary, replica, synchronizer, clientWrites, maxLagNanos);
+
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy();
+        lazy.setTargetDataSource(routing);
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        lazy.afterPropertiesSet();
+        return lazy;
+    }
+
+    /**
+     * Синхронизация запускается после создания всех бинов: таблицы основной БД к этому времени уже созданы
+     * скриптом инициализации.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (routing == null) {
+            return;
+        }
+        MeterRegistry registry = meterRegistry.getObject();
+        routing.bindTo(registry);
+        synchronizer.bindTo(registry);
+        Gauge.builder("filmorate.replica.lag", synchronizer, sync -> sync.getLagNanos() == Long.MAX_VALUE
+                        ? Double.NaN : sync.getLagNanos() / 1e9)
+                .description("Отставание реплики от основной БД")
+                .baseUnit("seconds")
+                .register(registry);
+        synchronizer.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (synchronizer != null) {
+            synchronizer.stop();
+        }
+        if (replica != null) {
+            replica.close();
+        }
+    }
+
+    private enum Route {
+        WRITE("primary", "read-write"),
+        REPLICA_LAG("primary", "replica-lag"),
+        OWN_WRITES("primary", "read-your-writes"),
+        READ("replica", "read-only");
+
+        private final String target;
+        private final String reason;
+
+        Route(String target, String reason) {
+            this.target = target;
+            this.reason = reason;
+        }
+    }
+
+    private static final class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+        private final ReplicaSynchronizer synchronizer;
+        private final ClientWrites clientWrites;
+        private final long maxLagNanos;
+        private final Counter[] counters = new Counter[Route.values().length];
+
+        ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaSynchronizer synchronizer,
+                                 ClientWrites clientWrites, long maxLagNanos) {
+            this.synchronizer = synchronizer;
+            this.clientWrites = clientWrites;
+            this.maxLagNanos = maxLagNanos;
+            setTargetDataSources(Map.of("primary", primary, "replica", replica));
+            setDefaultTargetDataSource(primary);
+            afterPropertiesSet();
+        }
+
+        void bindTo(MeterRegistry registry) {
+            for (Route route : Route.values()) {
+                counters[route.ordinal()] = Counter.builder("filmorate.datasource.routes")
+                        .description("Соединения, выданные основной БД или реплике")
+                        .tag("target", route.target)
+                        .tag("reason", route.reason)
+                        .register(registry);
+            }
+        }
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            Route route = route();
+            Counter counter = counters[route.ordinal()];
+            if (counter != null) {
+                counter.increment();
+            }
+            return route.target;
+        }
+
+        private Route route() {
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                return Route.WRITE;
+            }
+            if (synchronizer.getLagNanos() > maxLagNanos) {
+                return Route.REPLICA_LAG;
+            }
+            if (clientWrites.wroteAfter(synchronizer.getReplicatedAt())) {
+                return Route.OWN_WRITES;
+            }
+            return Route.READ;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Замена настоящей репликации для локальной второй H2: при запуске копирует таблицы основной БД снимком
+ * {@code SCRIPT}/{@code RUNSCRIPT}, дальше по таймеру переносит изменения из {@code replication_log},
+ * который пишет {@link ReplicationTrigger}. Для каждого ключа из журнала текущая строка перечитывается из основной БД
+ * и заменяет строку реплики, отсутствующая строка удаляется, поэтому повтор и порядок записей журнала не важны.
+ * Проверка внешних ключей на реплике выключена: строки разных таблиц могут прийти в разных пакетах.
+ * Реплика содержит все изменения, зафиксированные до {@link #getReplicatedAt()}.
+ */
+@Slf4j
+class ReplicaSynchronizer {
+    static final List<String> TABLES = List.of("MPA", "GENRES", "FILMS", "FILM_GENRES", "USERS", "FRIENDSHIP", "LIKES");
+    private static final long NEVER = Long.MIN_VALUE;
+    private static final int SELECT_CHUNK = 500;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final TransactionTemplate replicaTransaction;
+    private final Duration interval;
+    private final int batchSize;
+    private final Map<String, List<String>> keyColumns = new LinkedHashMap<>();
+    private volatile long replicatedAt = NEVER;
+    private volatile Timer syncTimer;
+    private volatile Counter changes;
+    private ScheduledExecutorService executor;
+
+    ReplicaSynchronizer(DataSource primary, DataSource replica, Duration interval, int batchSize) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.replicaTransaction = new TransactionTemplate(new DataSourceTransactionManager(replica));
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+    void bindTo(MeterRegistry registry) {
+        syncTimer = Timer.builder("filmorate.replica.sync")
+                .description("Время переноса пакета изменений на реплику")
+                .register(registry);
+        changes = Counter.builder("filmorate.replica.changes")
+                .description("Записи журнала репликации, перенесённые на реплику")
+                .register(registry);
+    }
+
+    /**
+     * Отметка {@link System#nanoTime()}, до которой все зафиксированные изменения уже есть на реплике;
+     * {@link Long#MIN_VALUE}, пока реплика не заполнена.
+     */
+    long getReplicatedAt() {
+        return replicatedAt;
+    }
+
+    long getLagNanos() {
+        long at = replicatedAt;
+        return at == NEVER ? Long.MAX_VALUE : System.nanoTime() - at;
+    }
+
+    void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::syncQuietly, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("Реплика для чтения включена, синхронизация каждые {} мс", interval.toMillis());
+    }
+
+    void stop() throws InterruptedException {
+        ReplicationTrigger.setEnabled(false);
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Переносит изменения, пока журнал не опустеет. До первого удачного снимка каждый запуск повторяет снимок.
+     *
+     * @return количество перенесённых записей журнала
+     */
+    int sync() {
+        if (keyColumns.isEmpty()) {
+            snapshot();
+        }
+        int total = 0;
+        int applied;
+        do {
+            long started = System.nanoTime();
+            applied = syncBatch();
+            total += applied;
+            if (applied < batchSize) {
+                replicatedAt = started;
+            }
+        } while (applied == batchSize);
+        return total;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.error("Не удалось синхронизировать реплику", e);
+        }
+    }
+
+    /**
+     * Триггеры ставятся до снимка: изменения, сделанные во время копирования, попадут в журнал
+     * и будут перенесены поверх снимка.
+     */
+    private void snapshot() {
+        primary.execute("CREATE TABLE IF NOT EXISTS replication_log (seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "table_name VARCHAR(64) NOT NULL, key1 INTEGER NOT NULL, key2 INTEGER)");
+        primary.update("DELETE FROM replication_log");
+        ReplicationTrigger.setEnabled(true);
+        for (String table : TABLES) {
+            primary.execute("CREATE TRIGGER IF NOT EXISTS replicate_" + table + " AFTER INSERT, UPDATE, DELETE ON "
+                    + table + " FOR EACH ROW CALL '" + ReplicationTrigger.class.getName() + "'");
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("filmorate-replica", ".sql");
+            String path = file.toAbsolutePath().toString().replace("'", "''");
+            primary.execute("SCRIPT NOPASSWORDS NOSETTINGS DROP TO '" + path + "' TABLE " + String.join(", ", TABLES));
+            replica.execute("RUNSCRIPT FROM '" + path + "'");
+            for (String table : TABLES) {
+                replica.execute("DROP TRIGGER IF EXISTS replicate_" + table);
+            }
+            replica.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось создать файл снимка для реплики", e);
+        } finally {
+            deleteQuietly(file);
+        }
+        Map<String, List<String>> keys = new LinkedHashMap<>();
+        for (String table : TABLES) {
+            keys.put(table, primary.execute((ConnectionCallback<List<String>>) connection ->
+                    primaryKey(connection.getMetaData(), table)));
+        }
+        keyColumns.putAll(keys);
+        log.info("Реплика заполнена снимком основной БД");
+    }
+
+    private int syncBatch() {
+        List<LogEntry> entries = primary.query("SELECT seq, table_name, key1, key2 FROM replication_log ORDER BY seq LIMIT ?",
+                (rs, rowNum) -> new LogEntry(rs.getLong("seq"), rs.getString("table_name"),
+                        rs.getInt("key1"), (Integer) rs.getObject("key2")), batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        long started = System.nanoTime();
+        Map<String, Set<List<Integer>>> keysByTable = new LinkedHashMap<>();
+        for (LogEntry entry : entries) {
+            keysByTable.computeIfAbsent(entry.table(), table -> new LinkedHashSet<>()).add(entry.key());
+        }
+        Map<String, Rows> rowsByTable = new LinkedHashMap<>();
+        keysByTable.forEach((table, keys) -> rowsByTable.put(table, readRows(table, new ArrayList<>(keys))));
+        replicaTransaction.executeWithoutResult(status -> keysByTable.forEach((table, keys) -> {
+            String where = keyColumns.get(table).stream().map(column -> column + " = ?").collect(Collectors.joining(" AND "));
+            replica.batchUpdate("DELETE FROM " + table + " WHERE " + where,
+                    keys.stream().map(List::toArray).toList());
+            Rows rows = rowsByTable.get(table);
+            if (!rows.values().isEmpty()) {
+                replica.batchUpdate("INSERT INTO " + table + " (" + String.join(", ", rows.columns()) + ") VALUES ("
+                        + String.join(", ", Collections.nCopies(rows.columns().size(), "?")) + ")", rows.values());
+            }
+        }));
+        primary.batchUpdate("DELETE FROM replication_log WHERE seq = ?",
+                entries.stream().map(entry -> new Object[]{entry.seq()}).toList());
+        Timer timer = syncTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            changes.increment(entries.size());
+        }
+        return entries.size();
+    }
+
+    private Rows readRows(String table, List<List<Integer>> keys) {
+        List<String> columns = keyColumns.get(table);
+        List<String> names = new ArrayList<>();
+        List<Object[]> values = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += SELECT_CHUNK) {
+            List<List<Integer>> chunk = keys.subList(from, Math.min(from + SELECT_CHUNK, keys.size()));
+            String placeholder = columns.size() == 1 ? "?" : "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+            String sql = "SELECT * FROM " + table + " WHERE (" + String.join(", ", columns) + ") IN ("
+                    + String.join(", ", Collections.nCopies(chunk.size(), placeholder)) + ")";
+            primary.query(sql, rs -> {
+                ResultSetMetaData metaData = rs.getMetaData();
+                if (names.isEmpty()) {
+                    for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                        names.add(metaData.getColumnName(i));
+                    }
+                }
+                Object[] row = new Object[names.size()];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                values.add(row);
+            }, chunk.stream().flatMap(List::stream).toArray());
+        }
+        return new Rows(names, values);
+    }
+
+    private static List<String> primaryKey(DatabaseMetaData metaData, String table) throws SQLException {
+        Map<Integer, String> columns = new TreeMap<>();
+        try (ResultSet keys = metaData.getPrimaryKeys(null, null, table)) {
+            while (keys.next()) {
+                columns.put(keys.getInt("KEY_SEQ"), keys.getString("COLUMN_NAME"));
+            }
+        }
+        return List.copyOf(columns.values());
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл снимка реплики {}", file, e);
+        }
+    }
+
+    private record LogEntry(long seq, String table, int key1, Integer key2) {
+        List<Integer> key() {
+            return key2 == null ? List.of(key1) : List.of(key1, key2);
+        }
+    }
+
+    private record Rows(List<String> columns, List<Object[]> values) {
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Триггер H2 на таблицах основной БД: записывает первичный ключ изменённой строки в {@code replication_log}
+ * в той же транзакции, поэтому в журнал попадают только зафиксированные изменения. Сами данные не копируются -
+ * {@link ReplicaSynchronizer} перечитывает текущую строку по ключу. Ключи всех таблиц целочисленные,
+ * из одного или двух столбцов. Пока синхронизатор не запущен, триггер ничего не пишет, так что оставшиеся
+ * в файле БД триггеры не растят журнал при работе без реплики.
+ */
+public class ReplicationTrigger implements Trigger {
+    static final String INSERT_LOG = "INSERT INTO replication_log (table_name, key1, key2) VALUES (?, ?, ?)";
+
+    private static volatile boolean enabled;
+
+    private String tableName;
+    private int[] keyColumns;
+
+    static void setEnabled(boolean enabled) {
+        ReplicationTrigger.enabled = enabled;
+    }
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) throws SQLException {
+        this.tableName = tableName;
+        DatabaseMetaData metaData = conn.getMetaData();
+        Map<String, Integer> positions = new HashMap<>();
+        try (ResultSet columns = metaData.getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                positions.put(columns.getString("COLUMN_NAME"), columns.getInt("ORDINAL_POSITION") - 1);
+            }
+        }
+        Map<Integer, Integer> keyPositions = new TreeMap<>();
+        try (ResultSet keys = metaData.getPrimaryKeys(null, schemaName, tableName)) {
+            while (keys.next()) {
+                keyPositions.put(keys.getInt("KEY_SEQ"), positions.get(keys.getString("COLUMN_NAME")));
+            }
+        }
+        if (keyPositions.isEmpty() || keyPositions.size() > 2) {
+            throw new SQLException("Репликация поддерживает ключ из одного или двух столбцов, таблица " + tableName);
+        }
+        this.keyColumns = keyPositions.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        try (PreparedStatement statement = conn.prepareStatement(INSERT_LOG)) {
+            if (oldRow != null) {
+                log(statement, oldRow);
+            }
+            if (newRow != null && (oldRow == null || !sameKey(oldRow, newRow))) {
+                log(statement, newRow);
+            }
+        }
+    }
+
+    private void log(PreparedStatement statement, Object[] row) throws SQLException {
+        statement.setString(1, tableName);
+        statement.setObject(2, row[keyColumns[0]]);
+        statement.setObject(3, keyColumns.length > 1 ? row[keyColumns[1]] : null);
+        statement.executeUpdate();
+    }
+
+    private boolean sameKey(Object[] oldRow, Object[] newRow) {
+        for (int column : keyColumns) {
+            if (!oldRow[column].equals(newRow[column])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
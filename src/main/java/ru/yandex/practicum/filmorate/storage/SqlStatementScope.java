@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчик JDBC-запросов и времени БД в рамках одной операции текущего потока, например HTTP-запроса.
+ * Запросы учитывает обёртка DataSource из {@link JdbcMetricsPostProcessor}; области можно вкладывать,
+ * запрос засчитывается во все открытые области потока. Запросы из других потоков, например при асинхронной
+ * выгрузке NDJSON, не учитываются, пока область не передана в поток через {@link #attach()}.
+ */
+public final class SqlStatementScope implements AutoCloseable {
+    private static final ThreadLocal<SqlStatementScope> CURRENT = new ThreadLocal<>();
+
+    private final SqlStatementScope parent;
+    private final AtomicInteger statements = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+    private volatile boolean closed;
+
+    private SqlStatementScope(SqlStatementScope parent) {
+        this.parent = parent;
+    }
+
+    public static SqlStatementScope open() {
+        SqlStatementScope scope = new SqlStatementScope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * Область текущего потока; {@code null}, если ни одна не открыта.
+     */
+    public static SqlStatementScope current() {
+        return CURRENT.get();
+    }
+
+    static void record(long elapsedNanos) {
+        for (SqlStatementScope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            if (!scope.closed) {
+                scope.statements.incrementAndGet();
+                scope.nanos.addAndGet(elapsedNanos);
+            }
+        }
+    }
+
+    public int getStatements() {
+        return statements.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    /**
+     * Продолжает счёт в текущем потоке, например когда асинхронный запрос продолжается в другом потоке.
+     * Область может считать запросы нескольких потоков одновременно.
+     */
+    public void attach() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * Отвязывает область от текущего потока, не закрывая её; счёт можно продолжить через {@link #attach()}.
+     */
+    public void detach() {
+        if (CURRENT.get() != this) {
+            return;
+        }
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+
+    /**
+     * Закрывает область и возвращает поток к внешней; счётчики после закрытия не меняются.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        detach();
+    }
+}
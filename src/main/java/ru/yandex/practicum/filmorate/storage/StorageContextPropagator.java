@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Переносит контекст работы с БД из потока запроса в рабочий поток: область подсчёта SQL-запросов
+ * ({@link SqlStatementScope}) и клиента для чтения своих записей ({@link ClientWrites}). Без этого запросы к БД
+ * из рабочего потока не попадают в бюджет SQL-запросов эндпоинта и читают реплику, не зная о записях клиента.
+ */
+@Component
+public class StorageContextPropagator {
+    private final ClientWrites clientWrites;
+
+    public StorageContextPropagator(ObjectProvider<ReplicaRoutingPostProcessor> replicaRouting) {
+        ReplicaRoutingPostProcessor routing = replicaRouting.getIfAvailable();
+        this.clientWrites = routing == null ? null : routing.getClientWrites();
+    }
+
+    /**
+     * Executor поверх {@code delegate}, выполняющий задачи в контексте текущего потока. Контекст запоминается
+     * при вызове, поэтому вызывать нужно в потоке запроса, а не в потоке, который потом отправит задачу.
+     */
+    public Executor bind(Executor delegate) {
+        SqlStatementScope scope = SqlStatementScope.current();
+        String clientId = clientWrites == null ? null : clientWrites.currentClient();
+        return task -> delegate.execute(() -> {
+            if (scope != null) {
+                scope.attach();
+            }
+            if (clientId != null) {
+                clientWrites.begin(clientId, false);
+            }
+            try {
+                task.run();
+            } finally {
+                if (clientId != null) {
+                    clientWrites.detach();
+                }
+                if (scope != null) {
+                    scope.detach();
+                }
+            }
+        });
+    }
+}
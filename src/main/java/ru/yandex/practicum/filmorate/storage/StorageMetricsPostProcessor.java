@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеряет время каждого метода хранилищ {@link FilmStorage}, {@link UserStorage}, {@link GenreStorage}
+ * и {@link MpaStorage}: таймер {@code filmorate.storage.calls} с тегами {@code storage}, {@code method}
+ * и {@code outcome}; тег {@code implementation} разделяет реализации одного хранилища, например кэш и БД.
+ * Совет добавляется в уже существующий транзакционный прокси или в новый прокси класса.
+ * Таймеры создаются при первом вызове метода, дальше вызов только читает их из карты.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.metrics.storage.enabled", matchIfMissing = true)
+public class StorageMetricsPostProcessor extends AbstractBeanFactoryAwareAdvisingPostProcessor
+        implements SmartInitializingSingleton {
+    private static final List<Class<?>> STORAGES =
+            List.of(FilmStorage.class, UserStorage.class, GenreStorage.class, MpaStorage.class);
+
+    private final TimingInterceptor interceptor;
+
+    public StorageMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        setProxyTargetClass(true);
+        this.interceptor = new TimingInterceptor(meterRegistry);
+        this.advisor = new DefaultPointcutAdvisor(new StoragePointcut(), interceptor);
+    }
+
+    /**
+     * Реестр запоминается после создания всех бинов: хранилище может пережить свой контекст, как в тестах
+     * с пересозданием контекста, и тогда достать реестр из закрытого контекста уже нельзя.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        interceptor.registry();
+    }
+
+    private static Class<?> storageOf(Class<?> targetClass) {
+        for (Class<?> storage : STORAGES) {
+            if (storage.isAssignableFrom(targetClass)) {
+                return storage;
+            }
+        }
+        return null;
+    }
+
+    private static final class StoragePointcut extends StaticMethodMatcherPointcut {
+        StoragePointcut() {
+            setClassFilter(targetClass -> storageOf(targetClass) != null);
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            Class<?> storage = storageOf(targetClass);
+            return storage != null && ReflectionUtils.findMethod(storage, method.getName(), method.getParameterTypes()) != null;
+        }
+    }
+
+    private static final class TimingInterceptor implements MethodInterceptor {
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+        private final Map<Method, MethodTimers> timers = new ConcurrentHashMap<>();
+        private volatile MeterRegistry registry;
+
+        TimingInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            MethodTimers methodTimers = timers.get(invocation.getMethod());
+            if (methodTimers == null) {
+                methodTimers = timers.computeIfAbsent(invocation.getMethod(),
+                        method -> register(ClassUtils.getUserClass(invocation.getThis()), method));
+            }
+            long started = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                methodTimers.success().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                return result;
+            } catch (Throwable e) {
+                methodTimers.error().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        }
+
+        MeterRegistry registry() {
+            MeterRegistry current = registry;
+            if (current == null) {
+                current = meterRegistry.getObject();
+                registry = current;
+            }
+            return current;
+        }
+
+        private MethodTimers register(Class<?> targetClass, Method method) {
+            MeterRegistry registry = registry();
+            Class<?> storage = storageOf(targetClass);
+            String storageName = storage == null ? "unknown" : storage.getSimpleName();
+            String implementation = targetClass.getSimpleName();
+            return new MethodTimers(timer(registry, storageName, implementation, method, "success"),
+                    timer(registry, storageName, implementation, method, "error"));
+        }
+
+        private static Timer timer(MeterRegistry registry, String storage, String implementation, Method method,
+                                   String outcome) {
+            return Timer.builder("filmorate.storage.calls")
+                    .description("Время вызова метода хранилища")
+                    .tag("storage", storage)
+                    .tag("implementation", implementation)
+                    .tag("method", method.getName())
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+
+    private record MethodTimers(Timer success, Timer error) {
+    }
+}
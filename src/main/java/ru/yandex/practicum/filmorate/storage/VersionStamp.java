@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage;
+
+public final class VersionStamp {
+    private VersionStamp() {
+    }
+
+    /**
+     * Следующая версия данных: больше предыдущей и не меньше текущего времени в микросекундах.
+     * Поэтому версии не повторяются и после перезапуска приложения, и ETag из прошлого запуска не совпадёт с новым.
+     */
+    public static long next(long previous) {
+        return Math.max(previous + 1, System.currentTimeMillis() * 1000);
+    }
+}
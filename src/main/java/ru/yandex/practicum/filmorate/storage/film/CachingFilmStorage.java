@@ -0,0 +1,219 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.TransactionHooks;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Кэш собранных фильмов поверх {@link FilmDbStorage}: ограничен по числу записей (вытеснение W-TinyLFU) и по времени
+ * жизни записи. Одновременные промахи по одному ID сводятся к одной загрузке: в кэш кладётся незавершённый
+ * {@link CompletableFuture}, фильм читает из БД поток, который его положил, остальные ждут результат. Загрузка идёт
+ * вне блокировок кэша, поэтому не закрепляет виртуальный поток за несущим. Запись сбрасывается при изменении
+ * и удалении фильма - сразу и ещё раз после фиксации транзакции, а также при смене версии фильма, жанров
+ * или рейтингов. Версия фильма сверяется при каждом чтении: хранилище меняет её сразу после записи, раньше, чем
+ * кэш успеет сбросить запись, и без сверки запрос в этом промежутке получил бы новый ETag со старым фильмом.
+ * Лайки в сам фильм не входят, поэтому кэш не сбрасывают. Попадания, промахи, вытеснения и время загрузки
+ * пишутся в метрики кэша {@code films}.
+ */
+@Component("CachingFilmStorage")
+public class CachingFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
+    private final AsyncCache<Integer, CachedFilm> cache;
+
+    @Autowired
+    public CachingFilmStorage(@Qualifier("FilmDbStorage") FilmStorage filmStorage,
+                              GenreStorage genreStorage,
+                              MpaStorage mpaStorage,
+                              MeterRegistry meterRegistry,
+                              @Value("${filmorate.films.cache.max-size:10000}") long maxSize,
+                              @Value("${filmorate.films.cache.ttl:10m}") Duration ttl) {
+        this.filmStorage = filmStorage;
+        this.genreStorage = genreStorage;
+        this.mpaStorage = mpaStorage;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "films");
+    }
+
+    @Override
+    public Film getFilmByID(Integer id) {
+        long filmVersion = filmStorage.getFilmVersion(id);
+        long genresVersion = genreStorage.getVersion();
+        long mpaVersion = mpaStorage.getVersion();
+        CachedFilm cached = get(id, filmVersion, genresVersion, mpaVersion);
+        if (cached.filmVersion() != filmVersion
+                || cached.genresVersion() != genresVersion || cached.mpaVersion() != mpaVersion) {
+            cache.synchronous().invalidate(id);
+            cached = get(id, filmVersion, genresVersion, mpaVersion);
+        }
+        return copy(cached.film());
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        Film updated = filmStorage.updateFilm(film);
+        invalidate(film.getId());
+        return updated;
+    }
+
+    @Override
+    public void deleteFilmByID(Integer id) {
+        filmStorage.deleteFilmByID(id);
+        invalidate(id);
+    }
+
+    @Override
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Override
+    public List<Film> getFilmsPage(FilmSort sort, KeysetCursor after, int limit) {
+        return filmStorage.getFilmsPage(sort, after, limit);
+    }
+
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllFilms(consumer);
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        return filmStorage.addFilm(film);
+    }
+
+    @Override
+    public List<Integer> addFilms(List<Film> films) {
+        return filmStorage.addFilms(films);
+    }
+
+    @Override
+    public long getFilmVersion(Integer id) {
+        return filmStorage.getFilmVersion(id);
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return filmStorage.getCatalogVersion();
+    }
+
+    @Override
+    public boolean addLike(Integer filmID, Integer userID) {
+        return filmStorage.addLike(filmID, userID);
+    }
+
+    @Override
+    public boolean removeLike(Integer filmID, Integer userID) {
+        return filmStorage.removeLike(filmID, userID);
+    }
+
+    @Override
+    public boolean idIsPresent(Integer id) {
+        return filmStorage.idIsPresent(id);
+    }
+
+    @Override
+    public List<Film> findTopLikedFilms(Integer count) {
+        return filmStorage.findTopLikedFilms(count);
+    }
+
+    @Override
+    public List<Film> findTopLikedFilms(Integer count, Integer genreID, Integer year) {
+        return filmStorage.findTopLikedFilms(count, genreID, year);
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, Integer count) {
+        return filmStorage.searchFilms(query, count);
+    }
+
+    @Override
+    public List<Film> getSimilarFilms(Integer filmID, Integer count) {
+        return filmStorage.getSimilarFilms(filmID, count);
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(Integer userID, Integer count) {
+        return filmStorage.getRecommendedFilms(userID, count);
+    }
+
+    @Override
+    public void rebuildSimilarityModel() {
+        filmStorage.rebuildSimilarityModel();
+    }
+
+    @Override
+    public int reconcileLikeCounts() {
+        return filmStorage.reconcileLikeCounts();
+    }
+
+    @Override
+    public int applyLikeChanges(List<LikeChange> changes) {
+        return filmStorage.applyLikeChanges(changes);
+    }
+
+    /**
+     * Сброс после фиксации нужен, если загрузка началась до коммита и прочитала старую строку: {@code invalidate}
+     * убирает из кэша и идущую загрузку, её результат получат только уже ждущие потоки.
+     */
+    private void invalidate(Integer id) {
+        cache.synchronous().invalidate(id);
+        TransactionHooks.afterCommit(() -> cache.synchronous().invalidate(id));
+    }
+
+    /**
+     * Внутри блокировки кэша создаётся только пустой {@link CompletableFuture}; неудачная загрузка
+     * удаляется из кэша самим Caffeine, и ошибка (например, {@code FilmNotFoundException}) выбрасывается как есть.
+     * Версии прочитаны до загрузки, поэтому фильм в записи не старше своих версий.
+     */
+    private CachedFilm get(Integer id, long filmVersion, long genresVersion, long mpaVersion) {
+        CompletableFuture<CachedFilm> created = new CompletableFuture<>();
+        CompletableFuture<CachedFilm> future = cache.get(id, (key, executor) -> created);
+        if (future == created) {
+            try {
+                created.complete(new CachedFilm(filmStorage.getFilmByID(id), filmVersion, genresVersion, mpaVersion));
+            } catch (RuntimeException e) {
+                created.completeExceptionally(e);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Film copy(Film film) {
+        return film.toBuilder().genres(new ArrayList<>(film.getGenres())).build();
+    }
+
+    private record CachedFilm(Film film, long filmVersion, long genresVersion, long mpaVersion) {
+    }
+}
@@ -1,17 +1,29 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.IdBitmap;
+import ru.yandex.practicum.filmorate.storage.TransactionHooks;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
@@ -20,53 +32,261 @@ import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component("FilmDbStorage")
 @Slf4j
 public class FilmDbStorage implements FilmStorage {
+    private static final String FILM_SELECT = "SELECT f.* FROM films AS f ";
+    private static final String INSERT_FILM = "INSERT INTO films (name, description, release_date, duration, MPA_id) " +
+            "VALUES(?, ?, ?, ?, ?)";
+    private static final int STREAM_FETCH_SIZE = 1000;
     private final JdbcTemplate jdbcTemplate;
     private final GenreStorage genreStorage;
     private final MpaStorage mpaStorage;
     private final UserStorage userStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSimilarityModel similarityModel;
+    private final FilmSearchIndex searchIndex;
+    private final IdBitmap filmIds = new IdBitmap("films");
+    private final FilmVersions versions = new FilmVersions();
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreStorage genreStorage, MpaStorage mpaStorage, UserStorage userStorage) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, GenreStorage genreStorage, MpaStorage mpaStorage,
+                         UserStorage userStorage, FilmPopularityIndex popularityIndex,
+                         FilmSimilarityModel similarityModel, FilmSearchIndex searchIndex, MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
         this.genreStorage = genreStorage;
         this.mpaStorage = mpaStorage;
         this.userStorage = userStorage;
+        this.popularityIndex = popularityIndex;
+        this.similarityModel = similarityModel;
+        this.searchIndex = searchIndex;
+        filmIds.bindTo(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.query("SELECT id FROM films", rs -> {
+            filmIds.add(rs.getInt("id"));
+        });
+        log.debug("Загружено {} ID фильмов, карта ID занимает {} байт", filmIds.size(), filmIds.memoryBytes());
+        rebuildPopularityIndex();
+        rebuildSimilarityModel();
+        rebuildSearchIndex();
+        versions.bumpAll();
+    }
+
+    /**
+     * Индекс строится по однонаправленному курсору в порядке ID, весь каталог в памяти не собирается.
+     */
+    public void rebuildSearchIndex() {
+        searchIndex.rebuild(indexer -> jdbcTemplate.query(forwardOnly("SELECT id, name, description FROM films ORDER BY id"),
+                rs -> {
+                    indexer.accept(new FilmSearchIndex.IndexedText(rs.getInt("id"), rs.getString("name"),
+                            rs.getString("description")));
+                }));
+        log.debug("Поисковый индекс построен по {} фильмам", searchIndex.size());
+    }
+
+    public void rebuildPopularityIndex() {
+        popularityIndex.rebuild(() -> {
+            Map<Integer, Integer> likeCounts = new HashMap<>();
+            jdbcTemplate.query("SELECT id, like_count FROM films", rs -> {
+                likeCounts.put(rs.getInt("id"), rs.getInt("like_count"));
+            });
+            return likeCounts;
+        }, () -> {
+            Map<Integer, Integer> years = new HashMap<>();
+            Map<Integer, List<Integer>> genres = new HashMap<>();
+            String sqlQuery = "SELECT f.id, EXTRACT(YEAR FROM f.release_date) AS release_year, fg.genre_id " +
+                    "FROM films AS f LEFT JOIN film_genres AS fg ON f.id = fg.film_id";
+            jdbcTemplate.query(sqlQuery, rs -> {
+                int filmId = rs.getInt("id");
+                years.put(filmId, rs.getInt("release_year"));
+                int genreId = rs.getInt("genre_id");
+                if (!rs.wasNull()) {
+                    genres.computeIfAbsent(filmId, id -> new ArrayList<>()).add(genreId);
+                }
+            });
+            Map<Integer, FilmPopularityIndex.FilmFacets> facets = new HashMap<>();
+            years.forEach((filmId, year) -> facets.put(filmId, new FilmPopularityIndex.FilmFacets(year,
+                    genres.getOrDefault(filmId, List.of()).stream().mapToInt(Integer::intValue).toArray())));
+            return facets;
+        });
+        log.debug("Рейтинг популярности построен по {} фильмам", popularityIndex.size());
+    }
+
+    /**
+     * Читает таблицу likes одним проходом по индексу likes_user_idx (user_id, film_id) - первичный ключ likes
+     * упорядочен как (film_id, user_id) - и собирает лайки каждого пользователя в отсортированный массив,
+     * после чего модель строится параллельно в памяти.
+     */
+    @Override
+    public void rebuildSimilarityModel() {
+        Map<Integer, int[]> userFilms = new HashMap<>();
+        similarityModel.rebuild(() -> {
+            int[] current = {0, 0};
+            int[][] films = {new int[16]};
+            jdbcTemplate.query(forwardOnly("SELECT user_id, film_id FROM likes ORDER BY user_id, film_id"), rs -> {
+                int userId = rs.getInt("user_id");
+                if (current[1] > 0 && userId != current[0]) {
+                    userFilms.put(current[0], Arrays.copyOf(films[0], current[1]));
+                    current[1] = 0;
+                }
+                current[0] = userId;
+                if (current[1] == films[0].length) {
+                    films[0] = Arrays.copyOf(films[0], current[1] * 2);
+                }
+                films[0][current[1]++] = rs.getInt("film_id");
+            });
+            if (current[1] > 0) {
+                userFilms.put(current[0], Arrays.copyOf(films[0], current[1]));
+            }
+            return userFilms;
+        });
+        log.debug("Модель похожести фильмов построена по лайкам {} пользователей", userFilms.size());
     }
 
     @Override
     public List<Film> getAllFilms() {
-        String sqlQuery = "SELECT * FROM films";
+        String sqlQuery = FILM_SELECT + "ORDER BY f.id";
         List<Film> allFilms = jdbcTemplate.query(sqlQuery, this::sqlRowToFilm);
+        attachAllGenres(allFilms);
         log.debug("Сформирован список всех фильмов в базе размерностью {}", allFilms.size());
         return allFilms;
     }
 
+    @Override
+    public List<Film> getFilmsPage(FilmSort sort, KeysetCursor after, int limit) {
+        String sortColumn = switch (sort) {
+            case ID -> "f.id";
+            case NAME -> "f.name";
+            case RELEASE_DATE -> "f.release_date";
+        };
+        String orderBy = sort == FilmSort.ID ? "ORDER BY f.id LIMIT ?" : "ORDER BY " + sortColumn + ", f.id LIMIT ?";
+        List<Film> films;
+        if (after == null) {
+            films = jdbcTemplate.query(FILM_SELECT + orderBy, this::sqlRowToFilm, limit);
+        } else if (sort == FilmSort.ID) {
+            films = jdbcTemplate.query(FILM_SELECT + "WHERE f.id > ? " + orderBy, this::sqlRowToFilm,
+                    after.getId(), limit);
+        } else {
+            Object sortValue = sort == FilmSort.RELEASE_DATE ? parseCursorDate(after) : after.getSortValue();
+            films = jdbcTemplate.query(FILM_SELECT + "WHERE (" + sortColumn + ", f.id) > (?, ?) " + orderBy,
+                    this::sqlRowToFilm, sortValue, after.getId(), limit);
+        }
+        attachGenres(films);
+        log.debug("Сформирована страница фильмов после курсора {} размерностью {}", after, films.size());
+        return films;
+    }
+
+    /**
+     * Читает каталог одним запросом с присоединёнными жанрами через однонаправленный курсор. Запрос упорядочен
+     * только по первичному ключу films, чтобы H2 шёл по индексу без сортировки всей выборки; строки одного фильма
+     * идут подряд, и фильм передаётся потребителю, как только начинается следующий.
+     */
+    @Override
+    public void streamAllFilms(Consumer<Film> consumer) {
+        String sqlQuery = "SELECT f.*, fg.genre_id FROM films AS f " +
+                "LEFT JOIN film_genres AS fg ON f.id = fg.film_id " +
+                "ORDER BY f.id";
+        Film[] current = new Film[1];
+        int[] streamed = new int[1];
+        jdbcTemplate.query(forwardOnly(sqlQuery), rs -> {
+            int filmId = rs.getInt("id");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    emitStreamedFilm(current[0], consumer);
+                    streamed[0]++;
+                }
+                current[0] = sqlRowToFilm(rs, rs.getRow());
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                current[0].getGenres().add(genreStorage.getGenreByID(genreId));
+            }
+        });
+        if (current[0] != null) {
+            emitStreamedFilm(current[0], consumer);
+            streamed[0]++;
+        }
+        log.debug("Выгружено потоком {} фильмов", streamed[0]);
+    }
+
     @Override
     public Film addFilm(Film film) {
-        String sqlQuery = "INSERT INTO films (name, description, release_date, duration, MPA_id) " +
-                "VALUES(?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"id"});
-            stmt.setString(1, film.getName());
-            stmt.setString(2, film.getDescription());
-            stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
-            stmt.setInt(4, film.getDuration());
-            stmt.setInt(5, film.getMpa().getId());
+            PreparedStatement stmt = connection.prepareStatement(INSERT_FILM, new String[]{"id"});
+            setFilmParameters(stmt, film);
             return stmt;
         }, keyHolder);
         film.setId(keyHolder.getKey().intValue());
-        saveGenresOfFilmInDB(film);
+        saveGenresOfFilmsInDB(List.of(film));
+        filmIds.add(film.getId());
+        popularityIndex.addFilm(film.getId(), 0, facetsOf(film));
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        versions.bump(film.getId());
         log.debug("Добавлен фильм с ID {}, его название {}", film.getId(), film.getName());
         return getFilmByID(film.getId());
     }
 
+    /**
+     * Добавляет фильмы пакетными INSERT в films и film_genres в одной транзакции.
+     *
+     * @return сгенерированные ID в порядке переданных фильмов
+     */
+    @Override
+    @Transactional
+    public List<Integer> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return new ArrayList<>();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Integer> ids = new ArrayList<>(films.size());
+        for (int i = 0; i < films.size(); i++) {
+            int id = ((Number) keys.get(i).values().iterator().next()).intValue();
+            films.get(i).setId(id);
+            ids.add(id);
+        }
+        saveGenresOfFilmsInDB(films);
+        TransactionHooks.afterCommit(() -> films.forEach(film -> {
+            filmIds.add(film.getId());
+            popularityIndex.addFilm(film.getId(), 0, facetsOf(film));
+            searchIndex.put(film.getId(), film.getName(), film.getDescription());
+            versions.bump(film.getId());
+        }));
+        log.debug("Пакетно добавлено {} фильмов", ids.size());
+        return ids;
+    }
+
     @Override
     public Film updateFilm(Film film) {
         if (!idIsPresent(film.getId())) {
@@ -82,103 +302,353 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId(),
                 film.getId());
         deleteGenresOfFilmInDB(film.getId());
-        saveGenresOfFilmInDB(film);
+        saveGenresOfFilmsInDB(List.of(film));
+        popularityIndex.updateFacets(film.getId(), facetsOf(film));
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        versions.bump(film.getId());
         log.debug("Обновлен фильм с ID {}, его название {}", film.getId(), film.getName());
         return getFilmByID(film.getId());
     }
 
     @Override
     public Film getFilmByID(Integer id) {
-        SqlRowSet filmRow = jdbcTemplate.queryForRowSet("SELECT * FROM films WHERE id = ?", id);
-        if (filmRow.next()) {
-            log.debug("Найден фильм с ID {}, его название {}", filmRow.getInt("id"), filmRow.getString("name"));
-            return Film.builder()
-                    .id(filmRow.getInt("id"))
-                    .name(filmRow.getString("name"))
-                    .description(filmRow.getString("description"))
-                    .releaseDate(filmRow.getDate("release_date").toLocalDate())
-                    .duration(filmRow.getInt("duration"))
-                    .mpa(mpaStorage.getMpaByID(filmRow.getInt("mpa_id")))
-                    .genres(getGenresOfFilmByID(filmRow.getInt("id")))
-                    .build();
-        } else {
+        List<Film> films = jdbcTemplate.query(FILM_SELECT + "WHERE f.id = ?", this::sqlRowToFilm, id);
+        if (films.isEmpty()) {
             throw new FilmNotFoundException("Фильм с ID - " + id + " не найден в базе");
         }
+        attachGenres(films);
+        Film film = films.get(0);
+        log.debug("Найден фильм с ID {}, его название {}", film.getId(), film.getName());
+        return film;
     }
 
+    @Override
+    public long getFilmVersion(Integer id) {
+        return versions.get(id);
+    }
+
+    @Override
+    public long getCatalogVersion() {
+        return versions.catalog();
+    }
+
+    /**
+     * ID убирается из карты до удаления строки: проверка, попавшая между ними, уйдёт в БД,
+     * а устаревшего положительного ответа карты после удаления не будет. Если удаление не прошло, например
+     * из-за жанров или лайков фильма по внешним ключам, строка точно осталась, и ID возвращается в карту.
+     */
     @Override
     public void deleteFilmByID(Integer id) {
         String sqlQuery = "DELETE FROM films WHERE id = ?";
-        jdbcTemplate.update(sqlQuery, id);
+        filmIds.remove(id);
+        try {
+            jdbcTemplate.update(sqlQuery, id);
+        } catch (RuntimeException e) {
+            filmIds.add(id);
+            throw e;
+        }
+        popularityIndex.removeFilm(id);
+        searchIndex.remove(id);
+        versions.bump(id);
         log.debug("Фильм с ID {} удален", id);
     }
 
+    /**
+     * Одна вставка без предварительных проверок: дубль отсекается условием NOT EXISTS, а отсутствие
+     * фильма или пользователя - внешними ключами, причина выясняется только при ошибке. Два одинаковых
+     * параллельных лайка могут оба пройти NOT EXISTS, тогда второй упирается в первичный ключ likes
+     * и тоже считается дублем.
+     */
     @Override
+    @Transactional
     public boolean addLike(Integer filmID, Integer userID) {
-        if (!idIsPresent(filmID)) {
-            throw new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
-        }
-        if (!userStorage.idIsPresent(userID)) {
-            throw new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
-        }
-        String sqlQuery = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+        String sqlQuery = "INSERT INTO likes (film_id, user_id) SELECT ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        int insertedRows;
         try {
-            jdbcTemplate.update(sqlQuery, filmID, userID);
-            log.debug("Добавлен лайк от пользователя с ID {} к фильму с ID {}", userID, filmID);
-            return true;
+            insertedRows = jdbcTemplate.update(sqlQuery, filmID, userID, filmID, userID);
         } catch (DuplicateKeyException e) {
+            insertedRows = 0;
+        } catch (DataIntegrityViolationException e) {
+            throw notFoundForLike(filmID, userID, e);
+        }
+        if (insertedRows == 0) {
             log.debug("Лайк от пользователя с ID {} к фильму с ID {} уже существует", userID, filmID);
             return false;
         }
+        updateLikeCount(filmID, 1);
+        TransactionHooks.afterCommit(() -> similarityModel.addLike(filmID, userID));
+        log.debug("Добавлен лайк от пользователя с ID {} к фильму с ID {}", userID, filmID);
+        return true;
     }
 
     @Override
+    @Transactional
     public boolean removeLike(Integer filmID, Integer userID) {
-        if (!idIsPresent(filmID)) {
-            throw new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
-        }
-        if (!userStorage.idIsPresent(userID)) {
-            throw new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
-        }
         String sqlQuery = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int deletedEntity = jdbcTemplate.update(sqlQuery, filmID, userID);
         if (deletedEntity > 0) {
+            updateLikeCount(filmID, -1);
+            TransactionHooks.afterCommit(() -> similarityModel.removeLike(filmID, userID));
             log.debug("Удален лайк от пользователя с ID {} к фильму с ID {}", userID, filmID);
             return true;
         }
+        RuntimeException notFound = notFoundForLike(filmID, userID, null);
+        if (notFound != null) {
+            throw notFound;
+        }
         log.debug("Лайк от пользователя с ID {} к фильму с ID {} отсутствует в базе", userID, filmID);
         return false;
     }
 
+    /**
+     * Положительный ответ даёт карта ID без обращения к БД. Отрицательный перепроверяется в БД:
+     * фильм мог быть добавлен другим экземпляром приложения или ещё не отмечен в карте. Найденный в БД ID
+     * в карту не добавляется: параллельное удаление могло уже убрать его из карты, и он остался бы там навсегда.
+     */
     @Override
     public boolean idIsPresent(Integer id) {
-        SqlRowSet filmRow = jdbcTemplate.queryForRowSet("SELECT * FROM films WHERE id = ?", id);
-        return filmRow.next();
+        if (filmIds.contains(id)) {
+            return true;
+        }
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
     }
 
     @Override
     public List<Film> findTopLikedFilms(Integer count) {
-        String sqlQuery = "SELECT f.* FROM films AS f " +
-                "LEFT JOIN likes AS l ON f.id = l.film_id " +
-                "GROUP BY f.id " +
-                "ORDER BY COUNT(l.user_id) DESC, f.id ASC " +
-                "LIMIT ?";
-        List<Film> topFilms = jdbcTemplate.query(sqlQuery, this::sqlRowToFilm, count);
-        log.debug("Сформирован список фильмов с наибольшим количеством лайков размерностью {}", topFilms.size());
+        return findTopLikedFilms(count, null, null);
+    }
+
+    @Override
+    public List<Film> findTopLikedFilms(Integer count, Integer genreID, Integer year) {
+        List<Film> topFilms = getFilmsByIDs(popularityIndex.findTopFilmIds(count, genreID, year));
+        log.debug("Сформирован список фильмов с наибольшим количеством лайков (жанр {}, год {}) размерностью {}",
+                genreID, year, topFilms.size());
         return topFilms;
     }
 
-    private void saveGenresOfFilmInDB(Film film) {
-        if (film.getGenres() == null || film.getGenres().isEmpty()) {
+    @Override
+    public List<Film> searchFilms(String query, Integer count) {
+        List<Film> foundFilms = getFilmsByIDs(toList(searchIndex.search(query, count)));
+        log.debug("По запросу \"{}\" найдено {} фильмов", query, foundFilms.size());
+        return foundFilms;
+    }
+
+    @Override
+    public List<Film> getSimilarFilms(Integer filmID, Integer count) {
+        List<Film> similarFilms = getFilmsByIDs(toList(similarityModel.similarFilms(filmID, count)));
+        log.debug("Сформирован список фильмов, похожих на фильм с ID {}, размерностью {}", filmID, similarFilms.size());
+        return similarFilms;
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(Integer userID, Integer count) {
+        List<Film> recommendedFilms = getFilmsByIDs(toList(similarityModel.recommendFilms(userID, count)));
+        log.debug("Сформирован список рекомендаций для пользователя с ID {} размерностью {}", userID, recommendedFilms.size());
+        return recommendedFilms;
+    }
+
+    @Override
+    @Transactional
+    public int reconcileLikeCounts() {
+        String sqlQuery = "UPDATE films AS f SET like_count = " +
+                "(SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id) " +
+                "WHERE like_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)";
+        int fixedFilms = jdbcTemplate.update(sqlQuery);
+        if (fixedFilms > 0) {
+            TransactionHooks.afterCommit(() -> {
+                rebuildPopularityIndex();
+                versions.bumpAll();
+            });
+        }
+        log.debug("Пересчитаны счётчики лайков, исправлено {} фильмов", fixedFilms);
+        return fixedFilms;
+    }
+
+    @Override
+    @Transactional
+    public int applyLikeChanges(List<LikeChange> changes) {
+        List<Object[]> added = new ArrayList<>();
+        List<Object[]> removed = new ArrayList<>();
+        for (LikeChange change : changes) {
+            if (change.isLiked()) {
+                added.add(new Object[]{change.getFilmId(), change.getUserId(), change.getFilmId(), change.getUserId()});
+            } else {
+                removed.add(new Object[]{change.getFilmId(), change.getUserId()});
+            }
+        }
+        Map<Integer, Integer> deltas = new HashMap<>();
+        int[] addedCounts = jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) SELECT ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)", added);
+        int applied = collectDeltas(added, addedCounts, 1, deltas);
+        int[] removedCounts = jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", removed);
+        applied += collectDeltas(removed, removedCounts, -1, deltas);
+        List<Object[]> addedLikes = appliedRows(added, addedCounts);
+        List<Object[]> removedLikes = appliedRows(removed, removedCounts);
+
+        List<Object[]> counterUpdates = deltas.entrySet().stream()
+                .filter(delta -> delta.getValue() != 0)
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .collect(Collectors.toList());
+        Lock fence = lockLikeCounters();
+        try {
+            jdbcTemplate.batchUpdate("UPDATE films SET like_count = like_count + ? WHERE id = ?", counterUpdates);
+        } catch (RuntimeException e) {
+            fence.unlock();
+            throw e;
+        }
+        TransactionHooks.afterCommit(() -> {
+            counterUpdates.forEach(update -> {
+                popularityIndex.changeLikes((int) update[1], (int) update[0]);
+                versions.bump((int) update[1]);
+            });
+            addedLikes.forEach(like -> similarityModel.addLike((int) like[0], (int) like[1]));
+            removedLikes.forEach(like -> similarityModel.removeLike((int) like[0], (int) like[1]));
+        });
+        TransactionHooks.afterCompletion(fence::unlock);
+        log.debug("Применено {} изменений лайков из {}", applied, changes.size());
+        return applied;
+    }
+
+    private int collectDeltas(List<Object[]> rows, int[] updateCounts, int sign, Map<Integer, Integer> deltas) {
+        int applied = 0;
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                deltas.merge((Integer) rows.get(i)[0], sign, Integer::sum);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private List<Object[]> appliedRows(List<Object[]> rows, int[] updateCounts) {
+        List<Object[]> applied = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                applied.add(rows.get(i));
+            }
+        }
+        return applied;
+    }
+
+    private static FilmPopularityIndex.FilmFacets facetsOf(Film film) {
+        int[] genreIds = film.getGenres() == null ? new int[0]
+                : film.getGenres().stream().mapToInt(Genre::getId).distinct().toArray();
+        return new FilmPopularityIndex.FilmFacets(film.getReleaseDate().getYear(), genreIds);
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private void emitStreamedFilm(Film film, Consumer<Film> consumer) {
+        film.getGenres().sort(Comparator.comparingInt(Genre::getId));
+        consumer.accept(film);
+    }
+
+    private PreparedStatementCreator forwardOnly(String sqlQuery) {
+        return connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sqlQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        };
+    }
+
+    private Date parseCursorDate(KeysetCursor cursor) {
+        try {
+            return Date.valueOf(LocalDate.parse(cursor.getSortValue()));
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор страницы: " + cursor.encode());
+        }
+    }
+
+    /**
+     * Читает фильмы по списку ID и возвращает их в том же порядке, пропуская отсутствующие в базе.
+     */
+    private List<Film> getFilmsByIDs(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Film> films = jdbcTemplate.query(FILM_SELECT + "WHERE f.id = ANY(?)", this::sqlRowToFilm,
+                (Object) ids.toArray(new Integer[0]));
+        attachGenres(films);
+        Map<Integer, Film> filmsById = indexById(films);
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Выясняет, какой из ключей лайка отсутствует в БД. Вызывается только после неудачной записи.
+     *
+     * @param cause исходная ошибка БД, возвращается как есть, если оба ключа на месте
+     * @return исключение для выброса или {@code cause}
+     */
+    private RuntimeException notFoundForLike(Integer filmID, Integer userID, RuntimeException cause) {
+        if (!idIsPresent(filmID)) {
+            return new FilmNotFoundException("Фильм с ID " + filmID + " не найден в базе");
+        }
+        if (!userStorage.idIsPresent(userID)) {
+            return new UserNotFoundException("Пользователь с ID - " + userID + " не найден в базе");
+        }
+        return cause;
+    }
+
+    private void updateLikeCount(Integer filmID, int delta) {
+        String sqlQuery = "UPDATE films SET like_count = like_count + ? WHERE id = ?";
+        Lock fence = lockLikeCounters();
+        try {
+            jdbcTemplate.update(sqlQuery, delta, filmID);
+        } catch (RuntimeException e) {
+            fence.unlock();
+            throw e;
+        }
+        TransactionHooks.afterCommit(() -> {
+            popularityIndex.changeLikes(filmID, delta);
+            versions.bump(filmID);
+        });
+        TransactionHooks.afterCompletion(fence::unlock);
+    }
+
+    /**
+     * Не даёт перестройке рейтинга прочитать счётчики между их изменением в БД и применением приращения
+     * к рейтингу. Снимается после завершения транзакции.
+     */
+    private Lock lockLikeCounters() {
+        Lock fence = popularityIndex.likeChangeFence();
+        fence.lock();
+        return fence;
+    }
+
+    private void saveGenresOfFilmsInDB(List<Film> films) {
+        List<Object[]> filmGenres = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() == null) {
+                continue;
+            }
+            film.getGenres().stream()
+                    .map(Genre::getId)
+                    .distinct()
+                    .forEach(genreId -> filmGenres.add(new Object[]{film.getId(), genreId}));
+        }
+        if (filmGenres.isEmpty()) {
             log.debug("Список жанров пуст, добавлять запись в БД не требуется");
             return;
         }
         String sqlQuery = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-        film.getGenres().stream()
-                .map(Genre::getId)
-                .collect(Collectors.toSet())
-                .forEach(genreId -> jdbcTemplate.update(sqlQuery, film.getId(), genreId));
-        log.debug("В БД сохранено {} записей о жанрах фильма с ID {} и названием {}", film.getGenres().size(), film.getId(), film.getName());
+        jdbcTemplate.batchUpdate(sqlQuery, filmGenres);
+        log.debug("В БД сохранено {} записей о жанрах {} фильмов", filmGenres.size(), films.size());
+    }
+
+    private void setFilmParameters(PreparedStatement stmt, Film film) throws SQLException {
+        stmt.setString(1, film.getName());
+        stmt.setString(2, film.getDescription());
+        stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+        stmt.setInt(4, film.getDuration());
+        stmt.setInt(5, film.getMpa().getId());
     }
 
     private void deleteGenresOfFilmInDB(Integer filmID) {
@@ -187,26 +657,60 @@ public class FilmDbStorage implements FilmStorage {
         log.debug("{} записей о жанрах фильма с ID {} удалено из базы", deletedEntries, filmID);
     }
 
-    private List<Genre> getGenresOfFilmByID(Integer filmID) {
-        String sqlQuery = "SELECT g.id, g.name FROM film_genres AS fg " +
-                "JOIN genres AS g ON fg.genre_id = g.id " +
-                "WHERE fg.film_id = ? ORDER BY g.id";
-        return jdbcTemplate.query(sqlQuery, (rs, rowNum) -> Genre.builder()
-                .id(rs.getInt("id"))
-                .name(rs.getString("name"))
-                .build(), filmID);
+    /**
+     * Подгружает жанры для уже прочитанной страницы фильмов одним запросом по списку ID
+     * и раскладывает их по фильмам в памяти, вместо отдельного запроса на каждый фильм.
+     * Сами объекты жанров и рейтингов берутся из кэша справочников.
+     */
+    private void attachGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> filmsById = indexById(films);
+        String sqlQuery = "SELECT film_id, genre_id FROM film_genres " +
+                "WHERE film_id = ANY(?) ORDER BY film_id, genre_id";
+        jdbcTemplate.query(sqlQuery, genreAppender(filmsById), (Object) filmsById.keySet().toArray(new Integer[0]));
+    }
+
+    /**
+     * Вариант {@link #attachGenres(List)} для выгрузки всего каталога: список ID не передаётся,
+     * связи читаются целиком за один проход.
+     */
+    private void attachAllGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Integer, Film> filmsById = indexById(films);
+        String sqlQuery = "SELECT film_id, genre_id FROM film_genres ORDER BY film_id, genre_id";
+        jdbcTemplate.query(sqlQuery, genreAppender(filmsById));
+    }
+
+    private Map<Integer, Film> indexById(List<Film> films) {
+        return films.stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity(), (first, second) -> first, LinkedHashMap::new));
+    }
+
+    private RowCallbackHandler genreAppender(Map<Integer, Film> filmsById) {
+        return rs -> {
+            Film film = filmsById.get(rs.getInt("film_id"));
+            if (film != null) {
+                film.getGenres().add(genreStorage.getGenreByID(rs.getInt("genre_id")));
+            }
+        };
     }
 
     private Film sqlRowToFilm(ResultSet resultSet, int rowNumber) throws SQLException {
-        int filmId = resultSet.getInt("id");
-        return Film.builder()
-                .id(filmId)
+        Film.FilmBuilder filmBuilder = Film.builder()
+                .id(resultSet.getInt("id"))
                 .name(resultSet.getString("name"))
                 .description(resultSet.getString("description"))
                 .releaseDate(resultSet.getDate("release_date").toLocalDate())
                 .duration(resultSet.getInt("duration"))
-                .mpa(mpaStorage.getMpaByID(resultSet.getInt("MPA_id")))
-                .genres(getGenresOfFilmByID(filmId))
-                .build();
+                .genres(new ArrayList<>());
+        int mpaId = resultSet.getInt("mpa_id");
+        if (!resultSet.wasNull()) {
+            filmBuilder.mpa(mpaStorage.getMpaByID(mpaId));
+        }
+        return filmBuilder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,322 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Рейтинг фильмов по количеству лайков в памяти процесса.
+ * Фильмы упорядочены по ключу (лайки по убыванию, ID по возрастанию), закодированному в один long,
+ * поэтому топ из N фильмов читается обходом первых N элементов без обращения к БД.
+ * Кроме общего рейтинга ведутся отдельные рейтинги по жанру, году выпуска и паре (жанр, год), так что
+ * топ с фильтром стоит столько же, сколько общий.
+ * Изменения одного фильма сериализуются через {@link ConcurrentHashMap#computeIfPresent}: новый ключ
+ * добавляется раньше, чем удаляется старый, так что параллельный читатель никогда не теряет фильм,
+ * а возможный дубль отбрасывается при обходе.
+ * Изменения, пришедшие во время перестройки, применяются к текущему рейтингу и запоминаются, а перед публикацией
+ * нового рейтинга повторяются на нём. Счётчики лайков меняются приращениями, поэтому запись лайка держит
+ * {@link #likeChangeFence()} от изменения счётчика в БД до применения приращения, а перестройка читает БД
+ * под эксклюзивной блокировкой: каждое приращение либо уже учтено в прочитанных счётчиках, либо будет повторено.
+ */
+@Component
+@Slf4j
+public class FilmPopularityIndex {
+    /**
+     * Оценка памяти на один фильм: узел и индексные уровни skip-list, упакованный Long,
+     * узел ConcurrentHashMap и два Integer.
+     */
+    private static final long ESTIMATED_BYTES_PER_FILM = 136;
+    /**
+     * Оценка памяти на вхождение фильма в рейтинг жанра или года: узел skip-list и упакованный Long.
+     */
+    private static final long ESTIMATED_BYTES_PER_FACET_ENTRY = 72;
+    private static final long ALL_FILMS = facet(0, 0);
+
+    private static final long FILM_ID_MASK = Integer.MAX_VALUE;
+
+    private final Timer rebuildTimer;
+    private final ReadWriteLock fence = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private volatile State state = new State();
+    private volatile Queue<Consumer<State>> pendingChanges;
+
+    public FilmPopularityIndex(MeterRegistry meterRegistry) {
+        this.rebuildTimer = Timer.builder("filmorate.popularity.index.rebuild")
+                .description("Время полной перестройки рейтинга фильмов")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.popularity.index.size", this, FilmPopularityIndex::size)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.popularity.index.memory", this, FilmPopularityIndex::estimatedMemoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void rebuild(Supplier<Map<Integer, Integer>> likeCountsLoader) {
+        rebuild(likeCountsLoader, Map::of);
+    }
+
+    /**
+     * Полностью перестраивает рейтинг по актуальным счётчикам из БД.
+     * Новый рейтинг собирается отдельно и публикуется целиком, текущий продолжает обслуживать чтение.
+     * На время чтения БД записи лайков ждут, остальное время перестройки они идут параллельно.
+     * Параллельные перестройки выполняются по очереди.
+     *
+     * @param facetsLoader год и жанры фильмов; фильмы без записи попадают только в общий рейтинг
+     */
+    public void rebuild(Supplier<Map<Integer, Integer>> likeCountsLoader, Supplier<Map<Integer, FilmFacets>> facetsLoader) {
+        rebuildLock.lock();
+        try {
+            rebuildTimer.record(() -> rebuildExclusively(likeCountsLoader, facetsLoader));
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuildExclusively(Supplier<Map<Integer, Integer>> likeCountsLoader,
+                                    Supplier<Map<Integer, FilmFacets>> facetsLoader) {
+        Map<Integer, FilmFacets> facets;
+        Map<Integer, Integer> likeCounts;
+        fence.writeLock().lock();
+        try {
+            facets = facetsLoader.get();
+            likeCounts = likeCountsLoader.get();
+            pendingChanges = new ConcurrentLinkedQueue<>();
+        } finally {
+            fence.writeLock().unlock();
+        }
+        State rebuilt = new State();
+        likeCounts.forEach((filmId, likeCount) ->
+                rebuilt.put(filmId, likeCount, facets.getOrDefault(filmId, FilmFacets.NONE)));
+        fence.writeLock().lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            pendingChanges = null;
+            state = rebuilt;
+        } finally {
+            fence.writeLock().unlock();
+        }
+        log.debug("Рейтинг фильмов перестроен, фильмов в рейтинге {}, рейтингов по жанрам и годам {}",
+                rebuilt.films.size(), rebuilt.rankings.size() - 1);
+    }
+
+    public void addFilm(int filmId, int likeCount) {
+        addFilm(filmId, likeCount, FilmFacets.NONE);
+    }
+
+    public void addFilm(int filmId, int likeCount, FilmFacets facets) {
+        apply(current -> current.put(filmId, likeCount, facets));
+    }
+
+    /**
+     * Переносит фильм в рейтинги нового жанра и года после изменения фильма.
+     */
+    public void updateFacets(int filmId, FilmFacets facets) {
+        apply(current -> current.films.computeIfPresent(filmId, (id, ranked) -> {
+            long[] updated = facets.keys();
+            current.addKeys(updated, key(id, ranked.likeCount));
+            current.removeKeys(ranked.facets, key(id, ranked.likeCount), updated);
+            return new RankedFilm(ranked.likeCount, updated);
+        }));
+    }
+
+    public void removeFilm(int filmId) {
+        apply(current -> current.films.computeIfPresent(filmId, (id, ranked) -> {
+            current.removeKeys(ranked.facets, key(id, ranked.likeCount), null);
+            return null;
+        }));
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        apply(current -> current.films.computeIfPresent(filmId, (id, ranked) -> {
+            int updated = ranked.likeCount + delta;
+            current.addKeys(ranked.facets, key(id, updated));
+            current.removeKeys(ranked.facets, key(id, ranked.likeCount), null);
+            return new RankedFilm(updated, ranked.facets);
+        }));
+    }
+
+    /**
+     * Блокировка, которую запись лайка держит от изменения счётчика в БД до вызова {@link #changeLikes}
+     * (или до отката транзакции). Разделяемая: записи лайков не ждут друг друга, только чтение БД перестройкой.
+     */
+    public Lock likeChangeFence() {
+        return fence.readLock();
+    }
+
+    /**
+     * ID самых популярных фильмов в порядке убывания лайков, при равенстве - по возрастанию ID.
+     */
+    public List<Integer> findTopFilmIds(int count) {
+        return findTopFilmIds(count, null, null);
+    }
+
+    /**
+     * То же, что {@link #findTopFilmIds(int)}, среди фильмов жанра и (или) года выпуска.
+     *
+     * @param genreId жанр или {@code null} для любого
+     * @param year    год выпуска или {@code null} для любого
+     */
+    public List<Integer> findTopFilmIds(int count, Integer genreId, Integer year) {
+        Set<Long> ranking = state.rankings.get(facet(genreId == null ? 0 : genreId, year == null ? 0 : year));
+        if (ranking == null) {
+            return new ArrayList<>();
+        }
+        List<Integer> top = new ArrayList<>(Math.min(count, size()));
+        Set<Integer> seen = new HashSet<>();
+        for (Long key : ranking) {
+            if (top.size() >= count) {
+                break;
+            }
+            int filmId = (int) (key & FILM_ID_MASK);
+            if (seen.add(filmId)) {
+                top.add(filmId);
+            }
+        }
+        return top;
+    }
+
+    public int size() {
+        return state.films.size();
+    }
+
+    public long estimatedMemoryBytes() {
+        State current = state;
+        return current.films.size() * ESTIMATED_BYTES_PER_FILM
+                + current.facetEntries.get() * ESTIMATED_BYTES_PER_FACET_ENTRY;
+    }
+
+    /**
+     * Применяет изменение к текущему рейтингу и, если идёт перестройка, запоминает его для нового рейтинга.
+     */
+    private void apply(Consumer<State> change) {
+        fence.readLock().lock();
+        try {
+            change.accept(state);
+            Queue<Consumer<State>> pending = pendingChanges;
+            if (pending != null) {
+                pending.add(change);
+            }
+        } finally {
+            fence.readLock().unlock();
+        }
+    }
+
+    /**
+     * Старшие 32 бита - инвертированное число лайков, младшие 31 - ID фильма. Число лайков может быть
+     * временно отрицательным, если снятие лайка применилось раньше его постановки из параллельной транзакции.
+     */
+    private static long key(int filmId, int likeCount) {
+        return (((long) Integer.MAX_VALUE - likeCount) << 31) | filmId;
+    }
+
+    /**
+     * Ключ рейтинга: жанр в старших 32 битах, год в младших, 0 означает любое значение.
+     */
+    private static long facet(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Год выпуска и ID жанров фильма, по которым строятся отдельные рейтинги.
+     */
+    public record FilmFacets(int year, int[] genreIds) {
+        public static final FilmFacets NONE = new FilmFacets(0, new int[0]);
+
+        /**
+         * Ключи всех рейтингов фильма, включая общий.
+         */
+        private long[] keys() {
+            int[] genres = Arrays.stream(genreIds).distinct().toArray();
+            long[] keys = new long[1 + (year == 0 ? 0 : 1) + genres.length * (year == 0 ? 1 : 2)];
+            int count = 0;
+            keys[count++] = ALL_FILMS;
+            if (year != 0) {
+                keys[count++] = facet(0, year);
+            }
+            for (int genreId : genres) {
+                keys[count++] = facet(genreId, 0);
+                if (year != 0) {
+                    keys[count++] = facet(genreId, year);
+                }
+            }
+            return keys;
+        }
+    }
+
+    private record RankedFilm(int likeCount, long[] facets) {
+    }
+
+    private static final class State {
+        private final ConcurrentHashMap<Integer, RankedFilm> films = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Long, ConcurrentSkipListSet<Long>> rankings = new ConcurrentHashMap<>();
+        private final AtomicLong facetEntries = new AtomicLong();
+
+        private State() {
+            rankings.put(ALL_FILMS, new ConcurrentSkipListSet<>());
+        }
+
+        private void put(int filmId, int likeCount, FilmFacets facets) {
+            films.compute(filmId, (id, previous) -> {
+                long[] keys = facets.keys();
+                addKeys(keys, key(id, likeCount));
+                if (previous != null) {
+                    removeKeys(previous.facets, key(id, previous.likeCount),
+                            previous.likeCount == likeCount ? keys : null);
+                }
+                return new RankedFilm(likeCount, keys);
+            });
+        }
+
+        private void addKeys(long[] facets, long key) {
+            for (long facet : facets) {
+                if (rankings.computeIfAbsent(facet, f -> new ConcurrentSkipListSet<>()).add(key) && facet != ALL_FILMS) {
+                    facetEntries.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * @param kept рейтинги, где тот же ключ только что добавлен заново и удалять его не нужно
+         */
+        private void removeKeys(long[] facets, long key, long[] kept) {
+            for (long facet : facets) {
+                if (kept != null && contains(kept, facet)) {
+                    continue;
+                }
+                Set<Long> ranking = rankings.get(facet);
+                if (ranking != null && ranking.remove(key) && facet != ALL_FILMS) {
+                    facetEntries.decrementAndGet();
+                }
+            }
+        }
+
+        private static boolean contains(long[] values, long value) {
+            for (long candidate : values) {
+                if (candidate == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
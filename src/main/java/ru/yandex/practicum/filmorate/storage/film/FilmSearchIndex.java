@@ -0,0 +1,262 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Инвертированный индекс названий и описаний фильмов для полнотекстового поиска.
+ * Текст разбивается на слова по границам букв и цифр любого алфавита, приводится к нижнему регистру,
+ * "ё" приравнивается к "е". Для каждого слова хранится список ID фильмов по возрастанию и частоты
+ * в примитивных массивах. Результаты ранжируются по BM25, слово из названия весит как {@link #NAME_WEIGHT}
+ * слов описания. Чтение идёт параллельно, изменения индекса - под блокировкой записи.
+ */
+@Component
+@Slf4j
+public class FilmSearchIndex {
+    private static final int NAME_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    public FilmSearchIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("filmorate.search.index.terms", this, FilmSearchIndex::termCount)
+                .register(meterRegistry);
+        Gauge.builder("filmorate.search.index.documents", this, FilmSearchIndex::size)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Заменяет индекс целиком. Источник передаёт фильмы в порядке возрастания ID,
+     * тогда каждый ID дописывается в конец списков без сдвига массивов.
+     */
+    public void rebuild(Consumer<Consumer<IndexedText>> source) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            source.accept(text -> index(text.filmId(), text.name(), text.description()));
+            log.debug("Поисковый индекс построен: фильмов {}, слов {}", documents.size(), postings.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int filmId, String name, String description) {
+        lock.writeLock().lock();
+        try {
+            unindex(filmId);
+            index(filmId, name, description);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            unindex(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ID фильмов, содержащих хотя бы одно слово запроса, по убыванию релевантности,
+     * при равенстве - по возрастанию ID.
+     */
+    public int[] search(String query, int limit) {
+        List<String> terms = new ArrayList<>(termFrequencies(query).keySet());
+        lock.readLock().lock();
+        try {
+            int total = 0;
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                total += list == null ? 0 : list.size;
+            }
+            long[] byFilm = new long[total];
+            float[] scores = new float[total];
+            int count = 0;
+            double averageLength = documents.isEmpty() ? 1 : (double) totalLength / documents.size();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents.size() - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int filmId = list.filmIds[i];
+                    double frequency = list.frequencies[i];
+                    double norm = K1 * (1 - B + B * documents.get(filmId).length / averageLength);
+                    scores[count] = (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+                    byFilm[count] = ((long) filmId << 32) | count;
+                    count++;
+                }
+            }
+            return rank(byFilm, scores, count, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void index(int filmId, String name, String description) {
+        Map<String, Integer> frequencies = termFrequencies(name);
+        frequencies.replaceAll((term, frequency) -> frequency * NAME_WEIGHT);
+        termFrequencies(description).forEach((term, frequency) -> frequencies.merge(term, frequency, Integer::sum));
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new Postings()).put(filmId, entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(filmId, new Document(frequencies.keySet().toArray(new String[0]), length));
+        totalLength += length;
+    }
+
+    private void unindex(int filmId) {
+        Document document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+        for (String term : document.terms) {
+            Postings list = postings.get(term);
+            if (list.remove(filmId) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+
+    /**
+     * Разбивает текст на слова: последовательности букв и цифр в любом алфавите.
+     */
+    static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        if (text == null || text.isEmpty()) {
+            return frequencies;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); ) {
+            int codePoint = i < normalized.length() ? normalized.codePointAt(i) : ' ';
+            boolean wordChar = Character.isLetterOrDigit(codePoint) || Character.getType(codePoint) == Character.NON_SPACING_MARK;
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                frequencies.merge(normalized.substring(start, i), 1, Integer::sum);
+                start = -1;
+            }
+            i += i < normalized.length() ? Character.charCount(codePoint) : 1;
+        }
+        return frequencies;
+    }
+
+    /**
+     * Складывает оценки одного фильма по разным словам и возвращает лучшие ID.
+     * Оценки неотрицательны, поэтому порядок битов float совпадает с порядком значений.
+     */
+    private static int[] rank(long[] byFilm, float[] scores, int count, int limit) {
+        Arrays.sort(byFilm, 0, count);
+        long[] ranked = new long[count];
+        int distinct = 0;
+        for (int i = 0; i < count; ) {
+            int filmId = (int) (byFilm[i] >>> 32);
+            float sum = 0;
+            while (i < count && (int) (byFilm[i] >>> 32) == filmId) {
+                sum += scores[(int) byFilm[i]];
+                i++;
+            }
+            ranked[distinct++] = ((long) Float.floatToIntBits(sum) << 32) | (Integer.MAX_VALUE - filmId);
+        }
+        Arrays.sort(ranked, 0, distinct);
+        int[] top = new int[Math.min(limit, distinct)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = Integer.MAX_VALUE - (int) ranked[distinct - 1 - i];
+        }
+        return top;
+    }
+
+    /**
+     * Текст фильма для построения индекса.
+     */
+    public record IndexedText(int filmId, String name, String description) {
+    }
+
+    private record Document(String[] terms, int length) {
+    }
+
+    /**
+     * Список ID фильмов по возрастанию с частотами слова; вставка в конец не сдвигает массив.
+     */
+    private static final class Postings {
+        private int[] filmIds = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private void put(int filmId, int frequency) {
+            int position = size > 0 && filmIds[size - 1] < filmId ? -size - 1 : Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position >= 0) {
+                frequencies[position] = frequency;
+                return;
+            }
+            int insertAt = -position - 1;
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(filmIds, insertAt, filmIds, insertAt + 1, size - insertAt);
+            System.arraycopy(frequencies, insertAt, frequencies, insertAt + 1, size - insertAt);
+            filmIds[insertAt] = filmId;
+            frequencies[insertAt] = frequency;
+            size++;
+        }
+
+        private boolean remove(int filmId) {
+            int position = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(filmIds, position + 1, filmIds, position, size - position - 1);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.storage.IntCounter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Модель похожести фильмов по совместным лайкам (item-to-item).
+ * Похожесть двух фильмов - косинус между их векторами лайков: число пользователей, лайкнувших оба фильма,
+ * делённое на корень из произведения числа лайков каждого. Для каждого фильма хранится не больше K соседей
+ * с числом совместных лайков, оценка считается при чтении по текущему числу лайков.
+ * Пользователи с очень большим числом лайков не учитываются в совместных лайках: их вклад почти не несёт
+ * сигнала, а стоимость растёт квадратично.
+ * Модель строится параллельно по одному проходу таблицы likes и дальше обновляется при каждом лайке.
+ * При обновлении пара, не попавшая в соседи, начинает счёт заново, поэтому между перестройками
+ * модель приблизительна; точность восстанавливается плановой перестройкой.
+ * Кроме соседей модель держит лайки каждого пользователя отсортированным массивом ID (около 4 байт на лайк):
+ * по ним обновление при лайке находит пары с другими фильмами пользователя, а рекомендации - лайкнутые фильмы,
+ * без обращения к БД. Ограничение K относится к соседям, число которых без него росло бы квадратично.
+ * Лайки, пришедшие во время перестройки, применяются к текущей модели и повторяются на новой перед публикацией;
+ * лайк и снятие лайка идемпотентны, поэтому повтор уже прочитанного из БД изменения ничего не меняет.
+ */
+@Component
+@Slf4j
+public class FilmSimilarityModel {
+    private static final int[] NONE = new int[0];
+
+    private final int maxNeighbours;
+    private final int maxUserLikes;
+    private final Timer buildTimer;
+    private final AtomicLong storedLikes = new AtomicLong();
+    private final AtomicLong storedNeighbours = new AtomicLong();
+    private final Lock rebuildLock = new ReentrantLock();
+    private volatile State state = new State(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    private List<LikeChange> pendingChanges;
+
+    @Autowired
+    public FilmSimilarityModel(MeterRegistry meterRegistry,
+                               @Value("${filmorate.recommendations.neighbours:50}") int maxNeighbours,
+                               @Value("${filmorate.recommendations.max-user-likes:1000}") int maxUserLikes) {
+        this.maxNeighbours = maxNeighbours;
+        this.maxUserLikes = maxUserLikes;
+        this.buildTimer = Timer.builder("filmorate.recommendations.model.build")
+                .description("Время полной перестройки модели похожести фильмов")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.recommendations.model.memory", this, FilmSimilarityModel::estimatedMemoryBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void rebuild(Map<Integer, int[]> userFilms) {
+        rebuild(() -> userFilms);
+    }
+
+    /**
+     * Строит модель заново и публикует её целиком, текущая модель продолжает обслуживать чтение.
+     * Параллельные перестройки выполняются по очереди.
+     *
+     * @param userFilmsLoader отсортированные по возрастанию ID лайкнутых фильмов по ID пользователя
+     */
+    public void rebuild(Supplier<Map<Integer, int[]>> userFilmsLoader) {
+        rebuildLock.lock();
+        try {
+            buildTimer.record(() -> build(userFilmsLoader));
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void build(Supplier<Map<Integer, int[]>> userFilmsLoader) {
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        Map<Integer, int[]> userFilms;
+        try {
+            userFilms = userFilmsLoader.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+        IntCounter likeCounter = new IntCounter();
+        IntCounter contributingLikes = new IntCounter();
+        long likes = 0;
+        for (int[] films : userFilms.values()) {
+            likes += films.length;
+            for (int filmId : films) {
+                likeCounter.add(filmId, 1);
+                if (films.length <= maxUserLikes) {
+                    contributingLikes.add(filmId, 1);
+                }
+            }
+        }
+        Map<Integer, int[]> filmUsers = invert(userFilms, contributingLikes);
+
+        ConcurrentHashMap<Integer, Integer> likeCounts = new ConcurrentHashMap<>();
+        likeCounter.forEach(likeCounts::put);
+        ConcurrentHashMap<Integer, Neighbours> neighbours = new ConcurrentHashMap<>();
+        filmUsers.keySet().parallelStream().forEach(filmId -> {
+            IntCounter coLikes = new IntCounter();
+            for (int userId : filmUsers.get(filmId)) {
+                for (int other : userFilms.get(userId)) {
+                    if (other != filmId) {
+                        coLikes.add(other, 1);
+                    }
+                }
+            }
+            Neighbours top = topNeighbours(filmId, coLikes, likeCounts);
+            if (top.size() > 0) {
+                neighbours.put(filmId, top);
+            }
+        });
+        publish(new State(new ConcurrentHashMap<>(userFilms), likeCounts, neighbours), likes);
+        log.debug("Модель похожести построена: пользователей {}, фильмов с соседями {}", userFilms.size(), neighbours.size());
+    }
+
+    public synchronized void addLike(int filmId, int userId) {
+        if (pendingChanges != null) {
+            pendingChanges.add(new LikeChange(filmId, userId, true));
+        }
+        State current = state;
+        int[] films = current.userFilms.getOrDefault(userId, NONE);
+        int position = Arrays.binarySearch(films, filmId);
+        if (position >= 0) {
+            return;
+        }
+        current.userFilms.put(userId, insert(films, -position - 1, filmId));
+        current.likeCounts.merge(filmId, 1, Integer::sum);
+        storedLikes.incrementAndGet();
+        if (films.length + 1 <= maxUserLikes) {
+            for (int other : films) {
+                changeCoLikes(current, filmId, other, 1);
+                changeCoLikes(current, other, filmId, 1);
+            }
+        }
+    }
+
+    public synchronized void removeLike(int filmId, int userId) {
+        if (pendingChanges != null) {
+            pendingChanges.add(new LikeChange(filmId, userId, false));
+        }
+        State current = state;
+        int[] films = current.userFilms.getOrDefault(userId, NONE);
+        int position = Arrays.binarySearch(films, filmId);
+        if (position < 0) {
+            return;
+        }
+        int[] remaining = remove(films, position);
+        if (remaining.length == 0) {
+            current.userFilms.remove(userId);
+        } else {
+            current.userFilms.put(userId, remaining);
+        }
+        current.likeCounts.computeIfPresent(filmId, (id, count) -> count > 1 ? count - 1 : null);
+        storedLikes.decrementAndGet();
+        if (films.length <= maxUserLikes) {
+            for (int other : remaining) {
+                changeCoLikes(current, filmId, other, -1);
+                changeCoLikes(current, other, filmId, -1);
+            }
+        }
+    }
+
+    /**
+     * ID фильмов, похожих на данный, по убыванию похожести, при равенстве - по возрастанию ID.
+     */
+    public int[] similarFilms(int filmId, int limit) {
+        State current = state;
+        Neighbours neighbours = current.neighbours.get(filmId);
+        if (neighbours == null) {
+            return NONE;
+        }
+        long[] ranked = new long[neighbours.size()];
+        for (int i = 0; i < ranked.length; i++) {
+            int other = neighbours.filmIds[i];
+            ranked[i] = rankKey(other, similarity(current, filmId, other, neighbours.coLikes[i]));
+        }
+        return topIds(ranked, ranked.length, limit);
+    }
+
+    /**
+     * Рекомендации пользователю: фильмы, которые он ещё не лайкнул, по сумме похожести на его лайкнутые фильмы.
+     */
+    public int[] recommendFilms(int userId, int limit) {
+        State current = state;
+        int[] liked = current.userFilms.getOrDefault(userId, NONE);
+        int total = 0;
+        for (int filmId : liked) {
+            Neighbours neighbours = current.neighbours.get(filmId);
+            total += neighbours == null ? 0 : neighbours.size();
+        }
+        int[] candidates = new int[total];
+        float[] scores = new float[total];
+        long[] byCandidate = new long[total];
+        int count = 0;
+        for (int filmId : liked) {
+            Neighbours neighbours = current.neighbours.get(filmId);
+            if (neighbours == null) {
+                continue;
+            }
+            for (int i = 0; i < neighbours.size(); i++) {
+                candidates[count] = neighbours.filmIds[i];
+                scores[count] = similarity(current, filmId, neighbours.filmIds[i], neighbours.coLikes[i]);
+                byCandidate[count] = ((long) candidates[count] << 32) | count;
+                count++;
+            }
+        }
+        Arrays.sort(byCandidate, 0, count);
+
+        long[] ranked = new long[count];
+        int distinct = 0;
+        for (int i = 0; i < count; ) {
+            int candidate = (int) (byCandidate[i] >>> 32);
+            float sum = 0;
+            while (i < count && (int) (byCandidate[i] >>> 32) == candidate) {
+                sum += scores[(int) byCandidate[i]];
+                i++;
+            }
+            if (Arrays.binarySearch(liked, candidate) < 0) {
+                ranked[distinct++] = rankKey(candidate, sum);
+            }
+        }
+        return topIds(ranked, distinct, limit);
+    }
+
+    public long estimatedMemoryBytes() {
+        State current = state;
+        return storedLikes.get() * Integer.BYTES
+                + current.userFilms.size() * 64L
+                + storedNeighbours.get() * 2 * Integer.BYTES
+                + current.neighbours.size() * 112L;
+    }
+
+    /**
+     * Публикует перестроенную модель и повторяет на ней лайки, пришедшие во время перестройки.
+     */
+    private synchronized void publish(State rebuilt, long likes) {
+        List<LikeChange> changes = pendingChanges;
+        pendingChanges = null;
+        state = rebuilt;
+        storedLikes.set(likes);
+        storedNeighbours.set(rebuilt.neighbours.values().stream().mapToLong(Neighbours::size).sum());
+        for (LikeChange change : changes) {
+            if (change.isLiked()) {
+                addLike(change.getFilmId(), change.getUserId());
+            } else {
+                removeLike(change.getFilmId(), change.getUserId());
+            }
+        }
+    }
+
+    private Map<Integer, int[]> invert(Map<Integer, int[]> userFilms, IntCounter contributingLikes) {
+        Map<Integer, int[]> filmUsers = new HashMap<>();
+        contributingLikes.forEach((filmId, count) -> filmUsers.put(filmId, new int[count]));
+        IntCounter filled = new IntCounter();
+        userFilms.forEach((userId, films) -> {
+            if (films.length > maxUserLikes) {
+                return;
+            }
+            for (int filmId : films) {
+                filled.add(filmId, 1);
+                filmUsers.get(filmId)[filled.get(filmId) - 1] = userId;
+            }
+        });
+        return filmUsers;
+    }
+
+    private Neighbours topNeighbours(int filmId, IntCounter coLikes, Map<Integer, Integer> likeCounts) {
+        long[] ranked = new long[coLikes.size()];
+        int[] count = {0};
+        int filmLikes = likeCounts.get(filmId);
+        coLikes.forEach((other, together) ->
+                ranked[count[0]++] = rankKey(other, cosine(together, filmLikes, likeCounts.get(other))));
+        int[] top = topIds(ranked, count[0], maxNeighbours);
+        int[] together = new int[top.length];
+        for (int i = 0; i < top.length; i++) {
+            together[i] = coLikes.get(top[i]);
+        }
+        return new Neighbours(top, together);
+    }
+
+    private void changeCoLikes(State current, int filmId, int other, int delta) {
+        current.neighbours.compute(filmId, (id, neighbours) -> {
+            Neighbours updated = neighbours == null ? new Neighbours(NONE, NONE) : neighbours;
+            int index = indexOf(updated.filmIds, other);
+            if (index >= 0) {
+                int together = updated.coLikes[index] + delta;
+                if (together > 0) {
+                    int[] coLikes = updated.coLikes.clone();
+                    coLikes[index] = together;
+                    updated = new Neighbours(updated.filmIds, coLikes);
+                } else {
+                    updated = new Neighbours(remove(updated.filmIds, index), remove(updated.coLikes, index));
+                    storedNeighbours.decrementAndGet();
+                }
+            } else if (delta > 0) {
+                if (updated.size() < maxNeighbours) {
+                    updated = new Neighbours(append(updated.filmIds, other), append(updated.coLikes, 1));
+                    storedNeighbours.incrementAndGet();
+                } else {
+                    int weakest = weakestNeighbour(current, filmId, updated);
+                    float weakestScore = similarity(current, filmId, updated.filmIds[weakest], updated.coLikes[weakest]);
+                    if (similarity(current, filmId, other, 1) > weakestScore) {
+                        int[] filmIds = updated.filmIds.clone();
+                        int[] coLikes = updated.coLikes.clone();
+                        filmIds[weakest] = other;
+                        coLikes[weakest] = 1;
+                        updated = new Neighbours(filmIds, coLikes);
+                    }
+                }
+            }
+            return updated.size() == 0 ? null : updated;
+        });
+    }
+
+    private int weakestNeighbour(State current, int filmId, Neighbours neighbours) {
+        int weakest = 0;
+        float weakestScore = Float.MAX_VALUE;
+        for (int i = 0; i < neighbours.size(); i++) {
+            float score = similarity(current, filmId, neighbours.filmIds[i], neighbours.coLikes[i]);
+            if (score < weakestScore) {
+                weakest = i;
+                weakestScore = score;
+            }
+        }
+        return weakest;
+    }
+
+    private static float similarity(State current, int filmId, int other, int together) {
+        return cosine(together, current.likeCounts.getOrDefault(filmId, 0), current.likeCounts.getOrDefault(other, 0));
+    }
+
+    private static float cosine(int together, int firstLikes, int secondLikes) {
+        if (firstLikes == 0 || secondLikes == 0) {
+            return 0;
+        }
+        return (float) (together / Math.sqrt((double) firstLikes * secondLikes));
+    }
+
+    /**
+     * Ключ сортировки по убыванию оценки, при равенстве - по возрастанию ID. Оценка неотрицательна,
+     * поэтому порядок её битов совпадает с порядком значений.
+     */
+    private static long rankKey(int filmId, float score) {
+        return ((long) Float.floatToIntBits(score) << 32) | (Integer.MAX_VALUE - filmId);
+    }
+
+    private static int[] topIds(long[] ranked, int count, int limit) {
+        Arrays.sort(ranked, 0, count);
+        int[] top = new int[Math.min(limit, count)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = Integer.MAX_VALUE - (int) ranked[count - 1 - i];
+        }
+        return top;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] insert(int[] values, int index, int value) {
+        int[] updated = new int[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, index);
+        updated[index] = value;
+        System.arraycopy(values, index, updated, index + 1, values.length - index);
+        return updated;
+    }
+
+    private static int[] append(int[] values, int value) {
+        return insert(values, values.length, value);
+    }
+
+    private static int[] remove(int[] values, int index) {
+        int[] updated = new int[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, index);
+        System.arraycopy(values, index + 1, updated, index, values.length - index - 1);
+        return updated;
+    }
+
+    private record Neighbours(int[] filmIds, int[] coLikes) {
+        int size() {
+            return filmIds.length;
+        }
+    }
+
+    private record State(ConcurrentHashMap<Integer, int[]> userFilms,
+                         ConcurrentHashMap<Integer, Integer> likeCounts,
+                         ConcurrentHashMap<Integer, Neighbours> neighbours) {
+    }
+}
@@ -1,18 +1,51 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     List<Film> getAllFilms();
 
+    /**
+     * Страница фильмов в порядке (ключ сортировки, ID), начиная строго после курсора.
+     *
+     * @param after курсор последней записи предыдущей страницы или {@code null} для первой страницы
+     */
+    List<Film> getFilmsPage(FilmSort sort, KeysetCursor after, int limit);
+
+    /**
+     * Передаёт все фильмы потребителю по мере чтения из БД, не накапливая каталог в памяти.
+     */
+    void streamAllFilms(Consumer<Film> consumer);
+
     Film addFilm(Film film);
 
+    /**
+     * Добавляет пакет фильмов одной транзакцией.
+     *
+     * @return сгенерированные ID в порядке переданных фильмов
+     */
+    List<Integer> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     Film getFilmByID(Integer id);
 
+    /**
+     * Версия фильма без обращения к БД: меняется при изменении фильма и его лайков.
+     */
+    long getFilmVersion(Integer id);
+
+    /**
+     * Версия каталога: меняется при изменении любого фильма или лайка.
+     */
+    long getCatalogVersion();
+
     void deleteFilmByID(Integer id);
 
     boolean addLike(Integer filmID, Integer userID);
@@ -22,4 +55,47 @@ public interface FilmStorage {
     boolean idIsPresent(Integer id);
 
     List<Film> findTopLikedFilms(Integer count);
+
+    /**
+     * Самые популярные фильмы жанра и (или) года выпуска.
+     *
+     * @param genreID жанр или {@code null} для любого
+     * @param year    год выпуска или {@code null} для любого
+     */
+    List<Film> findTopLikedFilms(Integer count, Integer genreID, Integer year);
+
+    /**
+     * Полнотекстовый поиск по названию и описанию, по убыванию релевантности.
+     */
+    List<Film> searchFilms(String query, Integer count);
+
+    /**
+     * Фильмы, которые чаще всего лайкают вместе с данным, по убыванию косинусной похожести.
+     */
+    List<Film> getSimilarFilms(Integer filmID, Integer count);
+
+    /**
+     * Фильмы, похожие на лайкнутые пользователем, за исключением уже лайкнутых.
+     */
+    List<Film> getRecommendedFilms(Integer userID, Integer count);
+
+    /**
+     * Перестраивает модель похожести фильмов по таблице likes.
+     */
+    void rebuildSimilarityModel();
+
+    /**
+     * Пересчитывает денормализованные счётчики лайков фильмов по таблице likes.
+     *
+     * @return количество фильмов, у которых счётчик расходился с фактическим числом лайков
+     */
+    int reconcileLikeCounts();
+
+    /**
+     * Применяет пакет постановок и снятий лайков одной транзакцией, каждая пара (фильм, пользователь)
+     * встречается в пакете не более одного раза. Уже поставленные и отсутствующие лайки пропускаются.
+     *
+     * @return количество фактически изменённых лайков
+     */
+    int applyLikeChanges(List<LikeChange> changes);
 }
\ No newline at end of file
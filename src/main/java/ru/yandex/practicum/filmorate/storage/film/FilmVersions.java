@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.VersionStamp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии фильмов для условных GET-запросов. Версия фильма меняется при любом изменении фильма или его лайков,
+ * версия каталога - при изменении любого фильма. Хранятся только версии фильмов, изменённых после последнего
+ * {@link #bumpAll()}, остальные фильмы имеют общую базовую версию.
+ */
+class FilmVersions {
+    private final AtomicLong clock = new AtomicLong(VersionStamp.next(0));
+    private final AtomicLong catalog = new AtomicLong(clock.get());
+    private final Map<Integer, Long> changed = new ConcurrentHashMap<>();
+    private volatile long base = clock.get();
+
+    long get(int filmId) {
+        Long version = changed.get(filmId);
+        return version == null ? base : Math.max(version, base);
+    }
+
+    long catalog() {
+        return catalog.get();
+    }
+
+    void bump(int filmId) {
+        long version = clock.updateAndGet(VersionStamp::next);
+        changed.put(filmId, version);
+        catalog.accumulateAndGet(version, Math::max);
+    }
+
+    /**
+     * Меняет версии всех фильмов сразу, например после массовой загрузки или пересчёта в обход хранилища.
+     */
+    void bumpAll() {
+        long version = clock.updateAndGet(VersionStamp::next);
+        base = version;
+        changed.clear();
+        catalog.accumulateAndGet(version, Math::max);
+    }
+}
@@ -1,10 +1,13 @@
 package ru.yandex.practicum.filmorate.storage.genre;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -14,27 +17,48 @@ import java.util.List;
 @Slf4j
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache<Genre> cache;
 
-    public GenreDbStorage(JdbcTemplate jdbcTemplate) {
+    public GenreDbStorage(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
+        this.cache = new ReferenceDataCache<>("genres", this::loadAllGenres, Genre::getId);
+        cache.bindTo(meterRegistry);
+    }
+
+    @PostConstruct
+    @Override
+    public void refreshCache() {
+        cache.refresh();
+    }
+
+    @Override
+    public long getVersion() {
+        return cache.getVersion();
     }
 
     @Override
     public List<Genre> getAllGenres() {
-        String sqlQuery = "SELECT * FROM genres";
-        List<Genre> result = jdbcTemplate.query(sqlQuery, GenreDbStorage::makeGenre);
+        List<Genre> result = cache.getAll();
         log.info("Сформирован список всех жанров в базе размерностью {}", result.size());
         return result;
     }
 
     @Override
     public Genre getGenreByID(int id) {
-        final String sqlQuery = "SELECT * FROM GENRES WHERE id = ?";
-        final List<Genre> genres = jdbcTemplate.query(sqlQuery, GenreDbStorage::makeGenre, id);
-        if (genres.size() != 1) {
+        Genre genre = cache.get(id);
+        if (genre == null) {
             throw new GenreNotFoundException("Жанр с ID " + id + " не найден в базе");
         }
-        return genres.get(0);
+        return genre;
+    }
+
+    public ReferenceDataCache<Genre> getCache() {
+        return cache;
+    }
+
+    private List<Genre> loadAllGenres() {
+        String sqlQuery = "SELECT * FROM genres ORDER BY id";
+        return jdbcTemplate.query(sqlQuery, GenreDbStorage::makeGenre);
     }
 
     static Genre makeGenre(ResultSet rs, int rowNum) throws SQLException {
@@ -43,4 +67,4 @@ public class GenreDbStorage implements GenreStorage {
                 .name(rs.getString("name"))
                 .build();
     }
-}
\ No newline at end of file
+}
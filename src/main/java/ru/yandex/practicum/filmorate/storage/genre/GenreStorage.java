@@ -8,4 +8,14 @@ public interface GenreStorage {
     List<Genre> getAllGenres();
 
     Genre getGenreByID(int id);
-}
\ No newline at end of file
+
+    /**
+     * Перечитывает справочник жанров из БД. Вызывается после любого изменения таблицы genres.
+     */
+    void refreshCache();
+
+    /**
+     * Версия справочника жанров, меняется при каждой перезагрузке.
+     */
+    long getVersion();
+}
@@ -1,11 +1,13 @@
 package ru.yandex.practicum.filmorate.storage.mpa;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.MpaNotFoundException;
 import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -15,31 +17,49 @@ import java.util.List;
 @Slf4j
 public class MpaDbStorage implements MpaStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final ReferenceDataCache<MPA> cache;
 
-    public MpaDbStorage(JdbcTemplate jdbcTemplate) {
+    public MpaDbStorage(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
+        this.cache = new ReferenceDataCache<>("mpa", this::loadAllMpa, MPA::getId);
+        cache.bindTo(meterRegistry);
+    }
+
+    @PostConstruct
+    @Override
+    public void refreshCache() {
+        cache.refresh();
+    }
+
+    @Override
+    public long getVersion() {
+        return cache.getVersion();
     }
 
     @Override
     public List<MPA> getAllMpa() {
-        String sqlQuery = "SELECT * FROM mpa";
-        List<MPA> result = jdbcTemplate.query(sqlQuery, this::sqlRowToMPA);
+        List<MPA> result = cache.getAll();
         log.info("Сформирован список всех рейтингов в базе размерностью {}", result.size());
         return result;
     }
 
     @Override
     public MPA getMpaByID(int id) {
-        SqlRowSet mpaRows = jdbcTemplate.queryForRowSet("SELECT * FROM mpa WHERE id = ?", id);
-        if (mpaRows.next()) {
-            log.debug("Найден рейтинг с ID {}, его название {}", mpaRows.getInt("id"), mpaRows.getString("name"));
-            return MPA.builder()
-                    .id(mpaRows.getInt("id"))
-                    .name(mpaRows.getString("name"))
-                    .build();
-        } else {
+        MPA mpa = cache.get(id);
+        if (mpa == null) {
             throw new MpaNotFoundException("Рейтинг с ID " + id + " не найден в базе");
         }
+        log.debug("Найден рейтинг с ID {}, его название {}", mpa.getId(), mpa.getName());
+        return mpa;
+    }
+
+    public ReferenceDataCache<MPA> getCache() {
+        return cache;
+    }
+
+    private List<MPA> loadAllMpa() {
+        String sqlQuery = "SELECT * FROM mpa ORDER BY id";
+        return jdbcTemplate.query(sqlQuery, this::sqlRowToMPA);
     }
 
     private MPA sqlRowToMPA(ResultSet resultSet, int rowNumber) throws SQLException {
@@ -48,4 +68,4 @@ public class MpaDbStorage implements MpaStorage {
                 .name(resultSet.getString("name"))
                 .build();
     }
-}
\ No newline at end of file
+}
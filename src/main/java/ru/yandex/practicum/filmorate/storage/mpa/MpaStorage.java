@@ -8,4 +8,14 @@ public interface MpaStorage {
     List<MPA> getAllMpa();
 
     MPA getMpaByID(int id);
-}
\ No newline at end of file
+
+    /**
+     * Перечитывает справочник рейтингов из БД. Вызывается после любого изменения таблицы mpa.
+     */
+    void refreshCache();
+
+    /**
+     * Версия справочника рейтингов, меняется при каждой перезагрузке.
+     */
+    long getVersion();
+}
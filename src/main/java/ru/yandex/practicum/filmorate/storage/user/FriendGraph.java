@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Граф дружбы в памяти процесса: для каждого пользователя - отсортированный массив ID друзей.
+ * Массивы не изменяются после публикации, запись заменяет массив пользователя целиком (copy-on-write),
+ * поэтому чтение идёт без блокировок, а общие друзья находятся слиянием двух отсортированных массивов.
+ * Запись в БД и в граф для одного пользователя выполняется под блокировкой {@link #lockFor(int)},
+ * чтобы порядок изменений в графе совпадал с порядком в БД. Под блокировкой идёт запрос к БД, поэтому это
+ * {@link ReentrantLock}, а не монитор: виртуальный поток, ждущий БД, не удерживает поток-носитель.
+ */
+@Component
+@Slf4j
+public class FriendGraph {
+    private static final int[] NO_FRIENDS = new int[0];
+    private static final int LOCK_STRIPES = 64;
+
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    private final AtomicLong edges = new AtomicLong();
+    private volatile ConcurrentHashMap<Integer, int[]> friends = new ConcurrentHashMap<>();
+
+    public FriendGraph(MeterRegistry meterRegistry) {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        Gauge.builder("filmorate.friend.graph.edges", edges, AtomicLong::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Заменяет граф целиком.
+     *
+     * @param adjacency отсортированные по возрастанию массивы ID друзей по ID пользователя
+     */
+    public void rebuild(Map<Integer, int[]> adjacency) {
+        ConcurrentHashMap<Integer, int[]> rebuilt = new ConcurrentHashMap<>(adjacency);
+        friends = rebuilt;
+        edges.set(rebuilt.values().stream().mapToLong(ids -> ids.length).sum());
+        log.debug("Граф дружбы перестроен, пользователей {}, связей {}", rebuilt.size(), edges.get());
+    }
+
+    public Lock lockFor(int userId) {
+        return locks[Math.floorMod(userId, LOCK_STRIPES)];
+    }
+
+    public void addFriend(int userId, int friendId) {
+        friends.compute(userId, (id, current) -> {
+            int[] ids = current == null ? NO_FRIENDS : current;
+            int position = Arrays.binarySearch(ids, friendId);
+            if (position >= 0) {
+                return current;
+            }
+            int insertAt = -position - 1;
+            int[] updated = new int[ids.length + 1];
+            System.arraycopy(ids, 0, updated, 0, insertAt);
+            updated[insertAt] = friendId;
+            System.arraycopy(ids, insertAt, updated, insertAt + 1, ids.length - insertAt);
+            edges.incrementAndGet();
+            return updated;
+        });
+    }
+
+    public void removeFriend(int userId, int friendId) {
+        friends.computeIfPresent(userId, (id, ids) -> {
+            int position = Arrays.binarySearch(ids, friendId);
+            if (position < 0) {
+                return ids;
+            }
+            edges.decrementAndGet();
+            if (ids.length == 1) {
+                return null;
+            }
+            int[] updated = new int[ids.length - 1];
+            System.arraycopy(ids, 0, updated, 0, position);
+            System.arraycopy(ids, position + 1, updated, position, ids.length - position - 1);
+            return updated;
+        });
+    }
+
+    public void removeUser(int userId) {
+        int[] removed = friends.remove(userId);
+        if (removed != null) {
+            edges.addAndGet(-removed.length);
+        }
+    }
+
+    /**
+     * Отсортированные ID друзей пользователя. Массив общий, изменять его нельзя.
+     */
+    public int[] friendsOf(int userId) {
+        return friends.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    /**
+     * Отсортированные ID пользователей, которые есть в друзьях у обоих.
+     */
+    public int[] commonFriends(int userId, int anotherUserId) {
+        int[] first = friendsOf(userId);
+        int[] second = friendsOf(anotherUserId);
+        int[] common = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, count);
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.IntCounter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Рекомендации друзей: пользователи, которых нет в друзьях, по убыванию числа общих друзей
+ * (при равенстве - по возрастанию ID). Обход на два шага по {@link FriendGraph} делится между потоками
+ * отдельного ForkJoinPool по друзьям первого шага, счётчики хранятся в примитивных хэш-таблицах.
+ * Результат кэшируется на пользователя и сбрасывается при изменении его дружб; изменения у друзей
+ * пользователя учитываются по истечении срока жизни записи.
+ */
+@Component
+@Slf4j
+public class FriendSuggester {
+    public static final int MAX_SUGGESTIONS = 100;
+    /**
+     * Сколько друзей первого шага обходит одна подзадача без дальнейшего деления.
+     */
+    private static final int SPLIT_THRESHOLD = 32;
+
+    private final FriendGraph friendGraph;
+    private final ForkJoinPool pool;
+    private final Cache<Integer, int[]> cache;
+
+    @Autowired
+    public FriendSuggester(FriendGraph friendGraph,
+                           MeterRegistry meterRegistry,
+                           @Value("${filmorate.friends.suggestions.parallelism:0}") int parallelism,
+                           @Value("${filmorate.friends.suggestions.cache-size:10000}") long cacheSize,
+                           @Value("${filmorate.friends.suggestions.cache-ttl:5m}") Duration cacheTtl) {
+        this.friendGraph = friendGraph;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "friendSuggestions");
+    }
+
+    /**
+     * ID рекомендуемых пользователей, не больше {@code limit}. Расчёт идёт в пуле рекомендаций,
+     * поток запроса не блокируется даже для пользователей с огромным числом связей.
+     */
+    public CompletableFuture<int[]> suggest(int userId, int limit) {
+        int[] cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(head(cached, limit));
+        }
+        return CompletableFuture.supplyAsync(() -> cache.get(userId, this::rank), pool)
+                .thenApply(ranked -> head(ranked, limit));
+    }
+
+    public void invalidate(int userId) {
+        cache.invalidate(userId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private int[] rank(int userId) {
+        int[] friends = friendGraph.friendsOf(userId);
+        IntCounter mutualFriends = pool.invoke(new CountTask(userId, friends, 0, friends.length));
+        int[] ranked = mutualFriends.top(MAX_SUGGESTIONS);
+        log.debug("Рассчитаны рекомендации друзей пользователя {}: кандидатов {}", userId, mutualFriends.size());
+        return ranked;
+    }
+
+    private static int[] head(int[] ranked, int limit) {
+        return ranked.length <= limit ? ranked : Arrays.copyOf(ranked, limit);
+    }
+
+    private final class CountTask extends RecursiveTask<IntCounter> {
+        private final int userId;
+        private final int[] friends;
+        private final int from;
+        private final int to;
+
+        private CountTask(int userId, int[] friends, int from, int to) {
+            this.userId = userId;
+            this.friends = friends;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntCounter compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                IntCounter counter = new IntCounter();
+                for (int i = from; i < to; i++) {
+                    for (int candidate : friendGraph.friendsOf(friends[i])) {
+                        if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                            counter.add(candidate, 1);
+                        }
+                    }
+                }
+                return counter;
+            }
+            int middle = (from + to) >>> 1;
+            CountTask left = new CountTask(userId, friends, from, middle);
+            left.fork();
+            IntCounter right = new CountTask(userId, friends, middle, to).compute();
+            return IntCounter.merge(left.join(), right);
+        }
+    }
+}
@@ -1,30 +1,75 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSort;
+import ru.yandex.practicum.filmorate.storage.IdBitmap;
+import ru.yandex.practicum.filmorate.storage.TransactionHooks;
 import ru.yandex.practicum.filmorate.validators.UserValidator;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 @Component("UserDbStorage")
 @Slf4j
 public class UserDbStorage implements UserStorage {
+    private static final String INSERT_USER = "INSERT INTO users(email, login, name, birthday) VALUES(?, ?, ?, ?)";
+    private static final int STREAM_FETCH_SIZE = 1000;
     private final JdbcTemplate jdbcTemplate;
+    private final IdBitmap userIds = new IdBitmap("users");
+    private final FriendGraph friendGraph;
+    private final FriendSuggester friendSuggester;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, FriendGraph friendGraph, FriendSuggester friendSuggester,
+                         MeterRegistry meterRegistry) {
         this.jdbcTemplate = jdbcTemplate;
+        this.friendGraph = friendGraph;
+        this.friendSuggester = friendSuggester;
+        userIds.bindTo(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        jdbcTemplate.query("SELECT id FROM users", rs -> {
+            userIds.add(rs.getInt("id"));
+        });
+        log.debug("Загружено {} ID пользователей, карта ID занимает {} байт", userIds.size(), userIds.memoryBytes());
+        rebuildFriendGraph();
+    }
+
+    public void rebuildFriendGraph() {
+        Map<Integer, List<Integer>> friendIds = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friendship", rs -> {
+            friendIds.computeIfAbsent(rs.getInt("user_id"), id -> new ArrayList<>()).add(rs.getInt("friend_id"));
+        });
+        Map<Integer, int[]> adjacency = new HashMap<>();
+        friendIds.forEach((userId, ids) -> adjacency.put(userId, ids.stream().mapToInt(Integer::intValue).sorted().toArray()));
+        friendGraph.rebuild(adjacency);
     }
 
     @Override
@@ -33,30 +78,99 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sqlQuery, this::sqlRowToUser);
     }
 
+    @Override
+    public List<User> getUsersPage(UserSort sort, KeysetCursor after, int limit) {
+        if (after == null) {
+            String sqlQuery = sort == UserSort.ID
+                    ? "SELECT * FROM users ORDER BY id LIMIT ?"
+                    : "SELECT * FROM users ORDER BY name, id LIMIT ?";
+            return jdbcTemplate.query(sqlQuery, this::sqlRowToUser, limit);
+        }
+        if (sort == UserSort.ID) {
+            String sqlQuery = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+            return jdbcTemplate.query(sqlQuery, this::sqlRowToUser, after.getId(), limit);
+        }
+        String sqlQuery = "SELECT * FROM users WHERE (name, id) > (?, ?) ORDER BY name, id LIMIT ?";
+        return jdbcTemplate.query(sqlQuery, this::sqlRowToUser, after.getSortValue(), after.getId(), limit);
+    }
+
+    @Override
+    public void streamAllUsers(Consumer<User> consumer) {
+        String sqlQuery = "SELECT * FROM users ORDER BY id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(sqlQuery,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        }, rs -> {
+            consumer.accept(sqlRowToUser(rs, rs.getRow()));
+        });
+    }
+
     @Override
     public User addUser(User user) {
         UserValidator.validate(user);
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        String sqlQuery = "INSERT INTO users(email, login, name, birthday) VALUES(?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(sqlQuery, new String[]{"id"});
-            stmt.setString(1, user.getEmail());
-            stmt.setString(2, user.getLogin());
-            stmt.setString(3, user.getName());
-            if (user.getBirthday() != null) {
-                stmt.setDate(4, Date.valueOf(user.getBirthday()));
-            } else {
-                stmt.setNull(4, java.sql.Types.DATE);
-            }
+            PreparedStatement stmt = connection.prepareStatement(INSERT_USER, new String[]{"id"});
+            setUserParameters(stmt, user);
             return stmt;
         }, keyHolder);
         user.setId(keyHolder.getKey().intValue());
+        userIds.add(user.getId());
         return user;
     }
 
+    @Override
+    @Transactional
+    public Map<Integer, String> addUsers(List<User> users) {
+        Set<String> takenEmails = findTaken("email", users.stream().map(User::getEmail).toArray(String[]::new));
+        Set<String> takenLogins = findTaken("login", users.stream().map(User::getLogin).toArray(String[]::new));
+        Map<Integer, String> rejected = new HashMap<>();
+        List<User> accepted = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (takenEmails.contains(user.getEmail())) {
+                rejected.put(i, "Пользователь с email " + user.getEmail() + " уже существует");
+            } else if (takenLogins.contains(user.getLogin())) {
+                rejected.put(i, "Пользователь с логином " + user.getLogin() + " уже существует");
+            } else {
+                if (user.getName() == null || user.getName().isBlank()) {
+                    user.setName(user.getLogin());
+                }
+                takenEmails.add(user.getEmail());
+                takenLogins.add(user.getLogin());
+                accepted.add(user);
+            }
+        }
+        if (accepted.isEmpty()) {
+            return rejected;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_USER, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setUserParameters(ps, accepted.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return accepted.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < accepted.size(); i++) {
+            accepted.get(i).setId(((Number) keys.get(i).values().iterator().next()).intValue());
+        }
+        TransactionHooks.afterCommit(() -> accepted.forEach(user -> userIds.add(user.getId())));
+        log.debug("Пакетно добавлено {} пользователей, отклонено {}", accepted.size(), rejected.size());
+        return rejected;
+    }
+
     @Override
     public User updateUser(User user) {
         if (!idIsPresent(user.getId())) {
@@ -90,46 +204,97 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    /**
+     * Одна запись без предварительных проверок: отсутствие пользователя выясняется только
+     * по нарушению внешнего ключа.
+     */
     @Override
     public boolean addFriendship(Integer userID, Integer friendID) {
-        if (!idIsPresent(userID) || !idIsPresent(friendID)) {
-            throw new UserNotFoundException("Один из пользователей отсутствует в базе, регистрация дружбы невозможна");
-        }
         String sqlQuery = "MERGE INTO friendship(user_id, friend_id) VALUES(?, ?)";
-        int updatedRows = jdbcTemplate.update(sqlQuery, userID, friendID);
-        return updatedRows > 0;
+        Lock lock = friendGraph.lockFor(userID);
+        lock.lock();
+        try {
+            int updatedRows;
+            try {
+                updatedRows = jdbcTemplate.update(sqlQuery, userID, friendID);
+            } catch (DataIntegrityViolationException e) {
+                if (!idIsPresent(userID) || !idIsPresent(friendID)) {
+                    throw new UserNotFoundException("Один из пользователей отсутствует в базе, регистрация дружбы невозможна");
+                }
+                throw e;
+            }
+            friendGraph.addFriend(userID, friendID);
+            friendSuggester.invalidate(userID);
+            return updatedRows > 0;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public boolean removeFriendship(Integer userID, Integer friendID) {
+        String sqlQuery = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
+        Lock lock = friendGraph.lockFor(userID);
+        lock.lock();
+        try {
+            int deletedRows = jdbcTemplate.update(sqlQuery, userID, friendID);
+            if (deletedRows > 0) {
+                friendGraph.removeFriend(userID, friendID);
+                friendSuggester.invalidate(userID);
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
         if (!idIsPresent(userID) || !idIsPresent(friendID)) {
             throw new UserNotFoundException("Один из пользователей отсутствует в базе, удаление дружбы невозможно");
         }
-        String sqlQuery = "DELETE FROM friendship WHERE user_id = ? AND friend_id = ?";
-        int deletedRows = jdbcTemplate.update(sqlQuery, userID, friendID);
-        return deletedRows > 0;
+        return false;
+    }
+
+    @Override
+    public List<User> getUsersByIds(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Integer[] boxedIds = Arrays.stream(ids).boxed().toArray(Integer[]::new);
+        Map<Integer, User> usersById = new HashMap<>();
+        jdbcTemplate.query("SELECT * FROM users WHERE id = ANY(?)", rs -> {
+            User user = sqlRowToUser(rs, rs.getRow());
+            usersById.put(user.getId(), user);
+        }, (Object) boxedIds);
+        List<User> users = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
     }
 
     @Override
     public List<User> getFriendsOfUser(Integer id) {
-        String sqlQuery = "SELECT u.* FROM users u JOIN friendship f ON u.id = f.friend_id WHERE f.user_id = ?";
-        return jdbcTemplate.query(sqlQuery, this::sqlRowToUser, id);
+        return getUsersByIds(friendGraph.friendsOf(id));
     }
 
     @Override
     public List<User> getFriendsCrossing(int userID, int anotherUserID) {
-        String sqlQuery = "SELECT u.* FROM users u " +
-                "JOIN friendship f1 ON u.id = f1.friend_id " +
-                "JOIN friendship f2 ON u.id = f2.friend_id " +
-                "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sqlQuery, this::sqlRowToUser, userID, anotherUserID);
+        return getUsersByIds(friendGraph.commonFriends(userID, anotherUserID));
     }
 
-
+    /**
+     * Положительный ответ даёт карта ID без обращения к БД. Отрицательный перепроверяется в БД:
+     * пользователь мог быть добавлен другим экземпляром приложения или ещё не отмечен в карте. Найденный в БД ID
+     * в карту не добавляется: параллельное удаление могло уже убрать его из карты, и он остался бы там навсегда.
+     */
     @Override
     public boolean idIsPresent(Integer id) {
-        SqlRowSet userRow = jdbcTemplate.queryForRowSet("SELECT * FROM users WHERE id = ?", id);
-        return userRow.next();
+        if (userIds.contains(id)) {
+            return true;
+        }
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQuery, Boolean.class, id));
     }
 
     @Override
@@ -138,7 +303,32 @@ public class UserDbStorage implements UserStorage {
             throw new UserNotFoundException("Пользователь с ID " + id + " не найден в базе");
         }
         String sqlQuery = "DELETE FROM users WHERE id = ?";
-        jdbcTemplate.update(sqlQuery, id);
+        userIds.remove(id);
+        try {
+            jdbcTemplate.update(sqlQuery, id);
+        } catch (RuntimeException e) {
+            // строку не дали удалить внешние ключи (дружба, лайки), она осталась в БД
+            userIds.add(id);
+            throw e;
+        }
+        friendGraph.removeUser(id);
+        friendSuggester.invalidate(id);
+    }
+
+    private Set<String> findTaken(String column, String[] values) {
+        String sqlQuery = "SELECT " + column + " FROM users WHERE " + column + " = ANY(?)";
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQuery, String.class, (Object) values));
+    }
+
+    private void setUserParameters(PreparedStatement stmt, User user) throws SQLException {
+        stmt.setString(1, user.getEmail());
+        stmt.setString(2, user.getLogin());
+        stmt.setString(3, user.getName());
+        if (user.getBirthday() != null) {
+            stmt.setDate(4, Date.valueOf(user.getBirthday()));
+        } else {
+            stmt.setNull(4, java.sql.Types.DATE);
+        }
     }
 
     private User sqlRowToUser(ResultSet resultSet, int rowNumber) throws SQLException {
@@ -1,14 +1,38 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSort;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     List<User> getAllUsers();
 
+    /**
+     * Страница пользователей в порядке (ключ сортировки, ID), начиная строго после курсора.
+     *
+     * @param after курсор последней записи предыдущей страницы или {@code null} для первой страницы
+     */
+    List<User> getUsersPage(UserSort sort, KeysetCursor after, int limit);
+
+    /**
+     * Передаёт всех пользователей потребителю по мере чтения из БД, не накапливая их в памяти.
+     */
+    void streamAllUsers(Consumer<User> consumer);
+
     User addUser(User user);
 
+    /**
+     * Добавляет пакет пользователей одной транзакцией. Пользователи, чей email или логин уже заняты
+     * в БД или раньше в этом же пакете, не добавляются.
+     *
+     * @return причины отказа по индексу пользователя в пакете
+     */
+    Map<Integer, String> addUsers(List<User> users);
+
     User updateUser(User user);
 
     void deleteUserByID(Integer id);
@@ -21,6 +45,11 @@ public interface UserStorage {
 
     boolean idIsPresent(Integer id);
 
+    /**
+     * Пользователи одним запросом в порядке переданных ID, отсутствующие в БД ID пропускаются.
+     */
+    List<User> getUsersByIds(int[] ids);
+
     List<User> getFriendsOfUser(Integer id);
 
     List<User> getFriendsCrossing(int userID, int anotherUserID);
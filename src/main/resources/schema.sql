@@ -14,15 +14,23 @@ CREATE TABLE IF NOT EXISTS films (
                                      description VARCHAR(200) NOT NULL,
                                      release_date DATE NOT NULL,
                                      duration INTEGER CHECK (duration > 0),
-                                     mpa_id INTEGER REFERENCES mpa(id)
+                                     mpa_id INTEGER REFERENCES mpa(id),
+                                     like_count INTEGER DEFAULT 0 NOT NULL
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count INTEGER DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+CREATE INDEX IF NOT EXISTS films_name_idx ON films (name, id);
+CREATE INDEX IF NOT EXISTS films_release_date_idx ON films (release_date, id);
+
 CREATE TABLE IF NOT EXISTS film_genres (
                                            film_id INTEGER REFERENCES films(id),
                                            genre_id INTEGER REFERENCES genres(id),
                                            PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS film_genres_genre_idx ON film_genres (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS users (
                                      id INTEGER NOT NULL PRIMARY KEY AUTO_INCREMENT,
                                      email VARCHAR(255) NOT NULL UNIQUE,
@@ -31,14 +39,20 @@ CREATE TABLE IF NOT EXISTS users (
                                      birthday DATE
 );
 
+CREATE INDEX IF NOT EXISTS users_name_idx ON users (name, id);
+
 CREATE TABLE IF NOT EXISTS friendship (
                                           user_id INTEGER REFERENCES users(id),
                                           friend_id INTEGER REFERENCES users(id),
                                           PRIMARY KEY (user_id, friend_id)
 );
 
+CREATE INDEX IF NOT EXISTS friendship_friend_idx ON friendship (friend_id, user_id);
+
 CREATE TABLE IF NOT EXISTS likes (
                                      film_id INTEGER REFERENCES films(id),
                                      user_id INTEGER REFERENCES users(id),
                                      PRIMARY KEY (film_id, user_id)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id, film_id);
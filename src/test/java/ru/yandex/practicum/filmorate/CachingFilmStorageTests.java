@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static ru.yandex.practicum.filmorate.SqlStatementAssertions.countStatements;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class CachingFilmStorageTests {
+    private final CachingFilmStorage filmStorage;
+    private final FilmDbStorage filmDbStorage;
+    private final FilmService filmService;
+    private final GenreDbStorage genreStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    public void cachedFilmIsServedWithoutDatabaseUntilUpdatedOrDeleted() {
+        Film film = filmStorage.addFilm(film("Кэш"));
+
+        Film loaded = filmStorage.getFilmByID(film.getId());
+        assertEquals(0, countStatements(() -> filmStorage.getFilmByID(film.getId())));
+        assertNotSame(loaded, filmStorage.getFilmByID(film.getId()));
+        loaded.getGenres().clear();
+        assertEquals(1, filmStorage.getFilmByID(film.getId()).getGenres().size());
+
+        filmStorage.updateFilm(loaded.toBuilder().name("Новое название").build());
+        assertEquals("Новое название", filmStorage.getFilmByID(film.getId()).getName());
+
+        filmStorage.deleteFilmByID(film.getId());
+        assertThrows(FilmNotFoundException.class, () -> filmStorage.getFilmByID(film.getId()));
+    }
+
+    @Test
+    public void cachedFilmIsReloadedAfterGenreChange() {
+        Film film = filmStorage.addFilm(film("Жанры"));
+        assertEquals("Комедия", filmStorage.getFilmByID(film.getId()).getGenres().get(0).getName());
+
+        jdbcTemplate.update("UPDATE genres SET name = 'Кинокомедия' WHERE id = 1");
+        genreStorage.refreshCache();
+        try {
+            assertEquals("Кинокомедия", filmStorage.getFilmByID(film.getId()).getGenres().get(0).getName());
+        } finally {
+            jdbcTemplate.update("UPDATE genres SET name = 'Комедия' WHERE id = 1");
+            genreStorage.refreshCache();
+        }
+    }
+
+    @Test
+    public void filmChangedBeforeCacheInvalidationIsReloadedWithItsVersion() {
+        Film film = filmStorage.addFilm(film("Старое название"));
+        filmStorage.getFilmByID(film.getId());
+
+        filmDbStorage.updateFilm(film.toBuilder().name("Новое название").build());
+        String eTag = filmService.getFilmETag(film.getId());
+
+        assertEquals("Новое название", filmService.findFilmByID(film.getId()).getName());
+        assertEquals(eTag, filmService.getFilmETag(film.getId()));
+    }
+
+    @Test
+    public void concurrentMissesLoadFilmOnce() throws Exception {
+        Film film = filmStorage.addFilm(film("Одна загрузка"));
+        double missesBefore = misses();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(8);
+            List<Future<Film>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                results.add(executor.submit(() -> {
+                    barrier.await();
+                    return filmStorage.getFilmByID(film.getId());
+                }));
+            }
+            for (Future<Film> result : results) {
+                assertEquals("Одна загрузка", result.get(1, TimeUnit.MINUTES).getName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(missesBefore + 1, misses());
+    }
+
+    private double misses() {
+        return meterRegistry.get("cache.gets").tags("cache", "films", "result", "miss").functionCounter().count();
+    }
+
+    private static Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90)
+                .mpa(MPA.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1).build()))
+                .build();
+    }
+}
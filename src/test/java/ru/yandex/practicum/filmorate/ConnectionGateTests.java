@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "filmorate.jdbc.gate.enabled=true",
+        "filmorate.jdbc.gate.permits=1",
+        "filmorate.jdbc.gate.timeout=100ms"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class ConnectionGateTests {
+    private final DataSource dataSource;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    public void connectionIsRefusedWhilePermitsAreTakenAndGrantedAfterClose() throws Exception {
+        Connection held = dataSource.getConnection();
+        assertEquals(1, meterRegistry.get("filmorate.jdbc.gate.active").gauge().value());
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        held.close();
+        held.close();
+        assertEquals(0, meterRegistry.get("filmorate.jdbc.gate.active").gauge().value());
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(1, meterRegistry.get("filmorate.jdbc.gate.active").gauge().value());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.storage.DatasetGenerator;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class DatasetGeneratorTests {
+    private final DatasetGenerator generator;
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+
+    @Test
+    public void correctCountsAndIndexesAfterGeneration() {
+        DatasetGenerator.Result first = generator.generate(new DatasetGenerator.Spec(500, 200, 8, 5, 1.0, 1));
+        DatasetGenerator.Result second = generator.generate(new DatasetGenerator.Spec(100, 50, 8, 5, 1.0, 2));
+
+        assertEquals(600, count("SELECT COUNT(*) FROM users"));
+        assertEquals(250, count("SELECT COUNT(*) FROM films"));
+        assertEquals(first.likes() + second.likes(), count("SELECT COUNT(*) FROM likes"));
+        assertEquals(first.likes() + second.likes(), count("SELECT SUM(like_count) FROM films"));
+        assertEquals(first.friendships() + second.friendships(), count("SELECT COUNT(*) FROM friendship"));
+        assertEquals(0, count("SELECT COUNT(*) FROM friendship WHERE user_id = friend_id"));
+        assertTrue(first.likes() > 500);
+
+        int mostLiked = filmStorage.findTopLikedFilms(1).get(0).getId();
+        assertEquals(count("SELECT MAX(like_count) FROM films"), count("SELECT like_count FROM films WHERE id = " + mostLiked));
+        assertTrue(userStorage.idIsPresent(600));
+    }
+
+    private long count(String sqlQuery) {
+        return jdbcTemplate.queryForObject(sqlQuery, Long.class);
+    }
+}
@@ -10,18 +10,44 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
 import ru.yandex.practicum.filmorate.controllers.FilmController;
+import ru.yandex.practicum.filmorate.controllers.NdjsonStreamer;
+import ru.yandex.practicum.filmorate.exceptions.ErrorHandler;
 import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetPage;
 import ru.yandex.practicum.filmorate.model.MPA;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -32,6 +58,7 @@ public class FilmControllerTests {
     private final FilmController controller;
     private static Validator validator;
     private Film film;
+    private MockMvc mockMvc;
 
     @BeforeAll
     public static void start() {
@@ -40,6 +67,7 @@ public class FilmControllerTests {
 
     @BeforeEach
     void beforeEach() {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
         film = Film.builder()
                 .name("firstName")
                 .description("description for FIRST film")
@@ -109,7 +137,29 @@ public class FilmControllerTests {
                 .genres(new ArrayList<>())
                 .build();
         controller.updateFilm(update);
-        assertEquals(update.getName(), controller.findFilmByID(createdFilm.getId()).getName());
+        assertEquals(update.getName(), findFilm(createdFilm.getId()).getName());
+    }
+
+    @Test
+    void correctAddFilmsBatchOverHttp() throws Exception {
+        String body = "[" +
+                "{\"name\":\"a\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":10,\"mpa\":{\"id\":1},\"genres\":[{\"id\":2}]}," +
+                "{\"name\":\"b\",\"description\":\"d\",\"releaseDate\":\"2001-01-01\",\"duration\":20,\"mpa\":{\"id\":3}}" +
+                "]";
+        mockMvc.perform(post("/films/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[1,2]"));
+        assertEquals("Драма", findFilm(1).getGenres().get(0).getName());
+    }
+
+    @Test
+    void getExceptionAndNoFilmsWhenBatchHasUnknownGenre() {
+        Film broken = film.toBuilder().name("broken").genres(List.of(Genre.builder().id(99).build())).build();
+        final GenreNotFoundException exception = assertThrows(GenreNotFoundException.class,
+                () -> controller.createFilms(new ArrayList<>(List.of(film, broken))));
+        assertEquals("Жанр с ID 99 не найден в базе", exception.getMessage());
+        assertTrue(controller.getAllFilms().isEmpty());
+        assertThrows(ValidationException.class, () -> controller.createFilms(new ArrayList<>()));
     }
 
     @Test
@@ -126,4 +176,118 @@ public class FilmControllerTests {
         final FilmNotFoundException exception = assertThrows(FilmNotFoundException.class, () -> controller.updateFilm(update));
         assertEquals("Фильм с ID - 50 не найден в базе", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    void correctWalkThroughFilmPagesByCursor() {
+        for (int i = 0; i < 5; i++) {
+            controller.createFilm(film.toBuilder().name("film" + i).build());
+        }
+        ResponseEntity<List<Film>> firstPage = controller.getFilmsPage(null, 2, "name");
+        assertEquals(2, firstPage.getBody().size());
+        String cursor = firstPage.getHeaders().getFirst(KeysetPage.NEXT_CURSOR_HEADER);
+        ResponseEntity<List<Film>> secondPage = controller.getFilmsPage(cursor, 2, "name");
+        assertEquals("film2", secondPage.getBody().get(0).getName());
+        cursor = secondPage.getHeaders().getFirst(KeysetPage.NEXT_CURSOR_HEADER);
+        ResponseEntity<List<Film>> lastPage = controller.getFilmsPage(cursor, 2, "name");
+        assertEquals(1, lastPage.getBody().size());
+        assertNull(lastPage.getHeaders().getFirst(KeysetPage.NEXT_CURSOR_HEADER));
+        assertThrows(ValidationException.class, () -> controller.getFilmsPage(null, 0, "id"));
+        assertThrows(ValidationException.class, () -> controller.getFilmsPage(null, 2, "duration"));
+    }
+
+    @Test
+    void correctStreamAllFilmsAsNdjson() throws Exception {
+        controller.createFilm(film.toBuilder().genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build())).build());
+        controller.createFilm(film.toBuilder().name("secondName").build());
+
+        MvcResult started = mockMvc.perform(get("/films").accept(NdjsonStreamer.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(NdjsonStreamer.APPLICATION_NDJSON_VALUE))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"genres\":[{\"id\":1,\"name\":\"Комедия\"},{\"id\":2,\"name\":\"Драма\"}]"));
+        assertTrue(lines[1].contains("\"name\":\"secondName\""));
+
+        MvcResult byParam = mockMvc.perform(get("/films").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(2, mockMvc.perform(asyncDispatch(byParam)).andReturn().getResponse()
+                .getContentAsString(StandardCharsets.UTF_8).split("\n").length);
+        mockMvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void correctSearchByNameAndDescriptionAfterUpdateAndDelete() {
+        controller.createFilm(film.toBuilder().name("Ёлки").description("Новогодняя комедия").build());
+        controller.createFilm(film.toBuilder().name("Ирония судьбы").description("Комедия про ёлки и баню").build());
+        controller.createFilm(film.toBuilder().name("Служебный роман").description("Комедия").build());
+
+        assertEquals(List.of(1, 2), controller.searchFilms("ЕЛКИ", 10).stream().map(Film::getId).toList());
+        assertEquals(List.of(2, 1), controller.searchFilms("ёлки баню", 10).stream().map(Film::getId).toList());
+        assertEquals(3, controller.searchFilms("комедия", 10).size());
+
+        controller.updateFilm(findFilm(1).toBuilder().name("Джентльмены удачи").build());
+        assertEquals(List.of(2), controller.searchFilms("ёлки", 10).stream().map(Film::getId).toList());
+        assertEquals(List.of(1), controller.searchFilms("удачи", 10).stream().map(Film::getId).toList());
+        assertTrue(controller.searchFilms("нет-таких-слов", 10).isEmpty());
+        assertThrows(ValidationException.class, () -> controller.searchFilms(" ", 10));
+        assertThrows(ValidationException.class, () -> controller.searchFilms("комедия", 0));
+    }
+
+    @Test
+    void popularAndFilmByIdStayWithinSqlBudget() {
+        for (int i = 0; i < 5; i++) {
+            controller.createFilm(film.toBuilder().name("film" + i)
+                    .genres(List.of(Genre.builder().id(1 + i % 6).build())).build());
+        }
+
+        SqlStatementAssertions.assertStatementsAtMost(2, () -> mockMvc.perform(get("/films/popular").param("count", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5)));
+        SqlStatementAssertions.assertStatementsAtMost(2, () -> mockMvc.perform(get("/films/3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("film2")));
+    }
+
+    @Test
+    void notModifiedFilmAndPopularWithoutDatabaseUntilFilmChanges() throws Exception {
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(new ErrorHandler()).build();
+        controller.createFilm(film);
+        String filmETag = mockMvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String popularETag = mockMvc.perform(get("/films/popular"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertEquals(0, SqlStatementAssertions.countStatements(() -> mockMvc.perform(get("/films/1")
+                        .header(HttpHeaders.IF_NONE_MATCH, filmETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""))));
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popularETag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/films/popular").param("count", "0").header(HttpHeaders.IF_NONE_MATCH, popularETag))
+                .andExpect(status().isBadRequest());
+
+        controller.updateFilm(film.toBuilder().id(1).name("updatedName").build());
+        mockMvc.perform(get("/films/1").header(HttpHeaders.IF_NONE_MATCH, filmETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("updatedName"));
+        mockMvc.perform(get("/films/popular").header(HttpHeaders.IF_NONE_MATCH, popularETag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/films/2"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+    private Film findFilm(int id) {
+        return controller.findFilmByID(id, new ServletWebRequest(new MockHttpServletRequest()));
+    }
+}
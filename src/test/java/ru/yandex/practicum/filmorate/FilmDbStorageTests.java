@@ -5,10 +5,16 @@ import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.LikeChange;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
@@ -17,8 +23,14 @@ import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.SqlStatementAssertions.countStatements;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -28,6 +40,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class FilmDbStorageTests {
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     @Order(1)
@@ -277,4 +290,275 @@ public class FilmDbStorageTests {
         final UserNotFoundException exception = assertThrows(UserNotFoundException.class, () -> filmStorage.removeLike(1, 147));
         assertEquals("Пользователь с ID - 147 не найден в базе", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(21)
+    public void correctGenresAndMpaOfSeveralFilmsInAllFilmsAndTop() {
+        filmStorage.addFilm(Film.builder().name("f1").description("d1").releaseDate(LocalDate.now()).duration(100)
+                .mpa(MPA.builder().id(3).build())
+                .genres(List.of(Genre.builder().id(2).build(), Genre.builder().id(1).build())).build());
+        filmStorage.addFilm(Film.builder().name("f2").description("d2").releaseDate(LocalDate.now()).duration(100)
+                .mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addFilm(Film.builder().name("f3").description("d3").releaseDate(LocalDate.now()).duration(100)
+                .mpa(MPA.builder().id(4).build())
+                .genres(List.of(Genre.builder().id(6).build())).build());
+
+        List<Film> all = filmStorage.getAllFilms();
+        assertEquals(3, all.size());
+        assertEquals("PG-13", all.get(0).getMpa().getName());
+        assertEquals(List.of(1, 2), all.get(0).getGenres().stream().map(Genre::getId).toList());
+        assertEquals("Комедия", all.get(0).getGenres().get(0).getName());
+        assertTrue(all.get(1).getGenres().isEmpty());
+        assertEquals(List.of(6), all.get(2).getGenres().stream().map(Genre::getId).toList());
+
+        List<Film> top = filmStorage.findTopLikedFilms(2);
+        assertEquals(2, top.size());
+        assertEquals(List.of(1, 2), top.get(0).getGenres().stream().map(Genre::getId).toList());
+        assertEquals("G", top.get(1).getMpa().getName());
+    }
+
+    @Test
+    @Order(22)
+    public void correctTopFilmsAfterReconcilingDriftedLikeCounts() {
+        User user = User.builder().email("u@u.com").login("u").name("n").birthday(LocalDate.now()).build();
+        userStorage.addUser(user);
+        filmStorage.addFilm(Film.builder().name("f1").description("d1").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addFilm(Film.builder().name("f2").description("d2").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addLike(2, 1);
+        jdbcTemplate.update("UPDATE films SET like_count = 5 WHERE id = 1");
+        filmStorage.rebuildPopularityIndex();
+        assertEquals("f1", filmStorage.findTopLikedFilms(1).get(0).getName());
+
+        assertEquals(1, filmStorage.reconcileLikeCounts());
+        assertEquals("f2", filmStorage.findTopLikedFilms(1).get(0).getName());
+        assertEquals(0, filmStorage.reconcileLikeCounts());
+    }
+
+    @Test
+    @Order(23)
+    public void correctPagesByNameWithIdTieBreak() {
+        for (String name : List.of("b", "a", "b", "c", "a")) {
+            filmStorage.addFilm(Film.builder().name(name).description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        }
+        List<Film> firstPage = filmStorage.getFilmsPage(FilmSort.NAME, null, 2);
+        assertEquals(List.of(2, 5), firstPage.stream().map(Film::getId).toList());
+        List<Film> secondPage = filmStorage.getFilmsPage(FilmSort.NAME, FilmSort.NAME.cursorOf(firstPage.get(1)), 2);
+        assertEquals(List.of(1, 3), secondPage.stream().map(Film::getId).toList());
+        List<Film> lastPage = filmStorage.getFilmsPage(FilmSort.NAME, FilmSort.NAME.cursorOf(secondPage.get(1)), 2);
+        assertEquals(List.of(4), lastPage.stream().map(Film::getId).toList());
+    }
+
+    @Test
+    @Order(24)
+    public void correctPagesByIdAndReleaseDate() {
+        filmStorage.addFilm(Film.builder().name("f1").description("d").releaseDate(LocalDate.of(2010, 1, 1)).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addFilm(Film.builder().name("f2").description("d").releaseDate(LocalDate.of(2000, 1, 1)).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addFilm(Film.builder().name("f3").description("d").releaseDate(LocalDate.of(2005, 1, 1)).duration(100).mpa(MPA.builder().id(1).build()).build());
+
+        assertEquals(List.of(2, 3), filmStorage.getFilmsPage(FilmSort.ID, new KeysetCursor(null, 1), 5).stream().map(Film::getId).toList());
+        KeysetCursor afterFirst = new KeysetCursor("2000-01-01", 2);
+        assertEquals(List.of(3, 1), filmStorage.getFilmsPage(FilmSort.RELEASE_DATE, afterFirst, 5).stream().map(Film::getId).toList());
+    }
+
+    @Test
+    @Order(25)
+    public void correctIdsAndGenresAfterBatchInsert() {
+        filmStorage.addFilm(Film.builder().name("f0").description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        List<Film> batch = List.of(
+                Film.builder().name("f1").description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(2).build())
+                        .genres(List.of(Genre.builder().id(3).build(), Genre.builder().id(1).build(), Genre.builder().id(3).build())).build(),
+                Film.builder().name("f2").description("d").releaseDate(LocalDate.now()).duration(90).mpa(MPA.builder().id(5).build()).build());
+
+        assertEquals(List.of(2, 3), filmStorage.addFilms(batch));
+        Film first = filmStorage.getFilmByID(2);
+        assertEquals("f1", first.getName());
+        assertEquals("PG", first.getMpa().getName());
+        assertEquals(List.of(1, 3), first.getGenres().stream().map(Genre::getId).toList());
+        assertEquals("NC-17", filmStorage.getFilmByID(3).getMpa().getName());
+        assertEquals(3, filmStorage.findTopLikedFilms(10).size());
+    }
+
+    @Test
+    @Order(26)
+    public void correctLikeCountsAfterApplyingLikeChangesBatch() {
+        userStorage.addUser(User.builder().email("u1@u.com").login("u1").name("n").birthday(LocalDate.now()).build());
+        userStorage.addUser(User.builder().email("u2@u.com").login("u2").name("n").birthday(LocalDate.now()).build());
+        filmStorage.addFilm(Film.builder().name("f1").description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addFilm(Film.builder().name("f2").description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        filmStorage.addLike(1, 1);
+
+        int applied = filmStorage.applyLikeChanges(List.of(
+                new LikeChange(1, 1, true),
+                new LikeChange(1, 2, false),
+                new LikeChange(2, 1, true),
+                new LikeChange(2, 2, true)));
+        assertEquals(2, applied);
+        assertEquals(List.of("f2", "f1"), filmStorage.findTopLikedFilms(2).stream().map(Film::getName).toList());
+
+        assertEquals(2, filmStorage.applyLikeChanges(List.of(new LikeChange(1, 1, false), new LikeChange(2, 1, false))));
+        assertEquals(0, filmStorage.reconcileLikeCounts());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = 2", Integer.class));
+    }
+
+    @Test
+    @Order(27)
+    public void getFalseForDuplicateLikeAndMissingLikeWithoutChangingCounter() {
+        userStorage.addUser(User.builder().email("u@u.com").login("u").name("n").birthday(LocalDate.now()).build());
+        filmStorage.addFilm(Film.builder().name("f").description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+
+        assertTrue(filmStorage.addLike(1, 1));
+        assertFalse(filmStorage.addLike(1, 1));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = 1", Integer.class));
+        assertTrue(filmStorage.removeLike(1, 1));
+        assertFalse(filmStorage.removeLike(1, 1));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = 1", Integer.class));
+    }
+
+    @Test
+    @Order(28)
+    public void correctSimilarFilmsAndRecommendationsAfterLikesAndRebuild() {
+        for (int i = 1; i <= 3; i++) {
+            userStorage.addUser(User.builder().email("u" + i + "@u.com").login("u" + i).name("n").birthday(LocalDate.now()).build());
+            filmStorage.addFilm(Film.builder().name("f" + i).description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        }
+        filmStorage.addLike(1, 1);
+        filmStorage.addLike(2, 1);
+        filmStorage.addLike(1, 2);
+        filmStorage.applyLikeChanges(List.of(new LikeChange(2, 2, true), new LikeChange(3, 2, true)));
+
+        assertEquals(List.of("f2", "f3"), filmStorage.getSimilarFilms(1, 10).stream().map(Film::getName).toList());
+        assertEquals(List.of("f3"), filmStorage.getRecommendedFilms(1, 10).stream().map(Film::getName).toList());
+
+        filmStorage.rebuildSimilarityModel();
+        assertEquals(List.of("f2", "f3"), filmStorage.getSimilarFilms(1, 10).stream().map(Film::getName).toList());
+        filmStorage.removeLike(3, 2);
+        assertTrue(filmStorage.getRecommendedFilms(1, 10).isEmpty());
+        assertTrue(filmStorage.getRecommendedFilms(3, 10).isEmpty());
+    }
+
+    @Test
+    @Order(29)
+    public void correctTopLikedFilmsByGenreAndYear() {
+        userStorage.addUser(User.builder().email("u@u.com").login("u").name("n").birthday(LocalDate.now()).build());
+        filmStorage.addFilm(Film.builder().name("f1").description("d").releaseDate(LocalDate.of(2023, 1, 1)).duration(100).mpa(MPA.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1).build())).build());
+        filmStorage.addFilms(List.of(
+                Film.builder().name("f2").description("d").releaseDate(LocalDate.of(2023, 5, 1)).duration(100).mpa(MPA.builder().id(1).build())
+                        .genres(List.of(Genre.builder().id(1).build(), Genre.builder().id(2).build())).build(),
+                Film.builder().name("f3").description("d").releaseDate(LocalDate.of(2020, 1, 1)).duration(100).mpa(MPA.builder().id(1).build())
+                        .genres(List.of(Genre.builder().id(2).build())).build()));
+        filmStorage.addLike(2, 1);
+
+        assertEquals(List.of("f2", "f1"), filmStorage.findTopLikedFilms(10, 1, null).stream().map(Film::getName).toList());
+        assertEquals(List.of("f2"), filmStorage.findTopLikedFilms(10, 2, 2023).stream().map(Film::getName).toList());
+
+        Film updated = filmStorage.getFilmByID(3).toBuilder().releaseDate(LocalDate.of(2023, 2, 2)).build();
+        filmStorage.updateFilm(updated);
+        assertEquals(List.of("f2", "f3"), filmStorage.findTopLikedFilms(10, 2, 2023).stream().map(Film::getName).toList());
+        filmStorage.rebuildPopularityIndex();
+        assertEquals(List.of("f2", "f3"), filmStorage.findTopLikedFilms(10, 2, 2023).stream().map(Film::getName).toList());
+        assertEquals(List.of("f2", "f1", "f3"), filmStorage.findTopLikedFilms(10, null, 2023).stream().map(Film::getName).toList());
+        assertTrue(filmStorage.findTopLikedFilms(10, 3, null).isEmpty());
+    }
+
+    @Test
+    @Order(30)
+    public void sameStatementCountForOneAndManyFilms() {
+        addFilmWithGenres(1);
+        int allFilms = SqlStatementAssertions.countStatements(filmStorage::getAllFilms);
+        int topFilms = SqlStatementAssertions.countStatements(() -> filmStorage.findTopLikedFilms(10));
+        int page = SqlStatementAssertions.countStatements(() -> filmStorage.getFilmsPage(FilmSort.ID, null, 10));
+        for (int i = 2; i <= 10; i++) {
+            addFilmWithGenres(i);
+        }
+
+        assertEquals(allFilms, SqlStatementAssertions.countStatements(filmStorage::getAllFilms));
+        assertEquals(topFilms, SqlStatementAssertions.countStatements(() -> filmStorage.findTopLikedFilms(10)));
+        assertEquals(page, SqlStatementAssertions.countStatements(() -> filmStorage.getFilmsPage(FilmSort.ID, null, 10)));
+        SqlStatementAssertions.assertStatementsAtMost(2, () -> filmStorage.getFilmByID(5));
+    }
+
+    @Test
+    @Order(31)
+    public void onlyOneOfConcurrentIdenticalLikesIsAdded() throws Exception {
+        userStorage.addUser(User.builder().email("u@u.com").login("u").name("n").birthday(LocalDate.now()).build());
+        for (int i = 1; i <= 20; i++) {
+            addFilmWithGenres(i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int filmId = 1; filmId <= 20; filmId++) {
+                int id = filmId;
+                CyclicBarrier barrier = new CyclicBarrier(8);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    results.add(executor.submit(() -> {
+                        barrier.await();
+                        return filmStorage.addLike(id, 1);
+                    }));
+                }
+                int added = 0;
+                for (Future<Boolean> result : results) {
+                    added += result.get(1, TimeUnit.MINUTES) ? 1 : 0;
+                }
+                assertEquals(1, added);
+                assertEquals(1, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = ?", Integer.class, id));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Order(32)
+    public void deletedFilmsStayAbsentAfterConcurrentIdChecks() throws Exception {
+        userStorage.addUser(User.builder().email("u@u.com").login("u").name("n").birthday(LocalDate.now()).build());
+        for (int i = 1; i <= 200; i++) {
+            filmStorage.addFilm(Film.builder().name("f" + i).description("d").releaseDate(LocalDate.now()).duration(100).mpa(MPA.builder().id(1).build()).build());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> checks = new ArrayList<>();
+            for (int thread = 0; thread < 3; thread++) {
+                checks.add(executor.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        for (int id = 1; id <= 200; id++) {
+                            filmStorage.idIsPresent(id);
+                        }
+                    }
+                }));
+            }
+            for (int id = 1; id <= 200; id++) {
+                filmStorage.deleteFilmByID(id);
+            }
+            for (Future<?> check : checks) {
+                check.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int id = 1; id <= 200; id++) {
+            int filmId = id;
+            assertFalse(filmStorage.idIsPresent(filmId));
+            assertThrows(FilmNotFoundException.class, () -> filmStorage.addLike(filmId, 1));
+        }
+    }
+
+    @Test
+    @Order(33)
+    public void filmKeptByForeignKeyStaysInIdBitmapAfterFailedDelete() {
+        addFilmWithGenres(1);
+        assertThrows(DataIntegrityViolationException.class, () -> filmStorage.deleteFilmByID(1));
+
+        assertEquals(0, countStatements(() -> filmStorage.idIsPresent(1)));
+        assertTrue(filmStorage.idIsPresent(1));
+    }
+
+    private void addFilmWithGenres(int number) {
+        filmStorage.addFilm(Film.builder().name("f" + number).description("d").releaseDate(LocalDate.now()).duration(100)
+                .mpa(MPA.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1 + number % 6).build(), Genre.builder().id(1 + (number + 1) % 6).build()))
+                .build());
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmPopularityIndexTests {
+    private FilmPopularityIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new FilmPopularityIndex(new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void correctOrderByLikesThenById() {
+        index.rebuild(() -> Map.of(1, 0, 2, 5, 3, 5, 4, 1));
+        assertEquals(List.of(2, 3, 4, 1), index.findTopFilmIds(10));
+        assertEquals(List.of(2, 3), index.findTopFilmIds(2));
+
+        index.changeLikes(1, 7);
+        index.changeLikes(2, -1);
+        assertEquals(List.of(1, 3, 2, 4), index.findTopFilmIds(10));
+    }
+
+    @Test
+    public void correctTopAfterAddingAndRemovingFilms() {
+        index.addFilm(10, 0);
+        index.addFilm(11, 0);
+        index.changeLikes(11, 1);
+        index.removeFilm(11);
+        index.changeLikes(11, 1);
+        assertEquals(List.of(10), index.findTopFilmIds(10));
+        assertEquals(1, index.size());
+        assertTrue(index.estimatedMemoryBytes() > 0);
+    }
+
+    @Test
+    public void correctTopByGenreAndYear() {
+        index.rebuild(() -> Map.of(1, 3, 2, 5, 3, 1), () -> Map.of(
+                1, new FilmPopularityIndex.FilmFacets(2023, new int[]{1, 2}),
+                2, new FilmPopularityIndex.FilmFacets(2020, new int[]{1}),
+                3, new FilmPopularityIndex.FilmFacets(2023, new int[]{2})));
+        assertEquals(List.of(2, 1), index.findTopFilmIds(10, 1, null));
+        assertEquals(List.of(1, 3), index.findTopFilmIds(10, null, 2023));
+        assertEquals(List.of(1, 3), index.findTopFilmIds(10, 2, 2023));
+        assertEquals(List.of(), index.findTopFilmIds(10, 3, null));
+
+        index.changeLikes(3, 5);
+        index.updateFacets(2, new FilmPopularityIndex.FilmFacets(2023, new int[]{2}));
+        index.addFilm(4, 0, new FilmPopularityIndex.FilmFacets(2023, new int[]{2}));
+        assertEquals(List.of(1), index.findTopFilmIds(10, 1, null));
+        assertEquals(List.of(3, 2, 1, 4), index.findTopFilmIds(10, 2, 2023));
+
+        index.removeFilm(3);
+        assertEquals(List.of(2, 1, 4), index.findTopFilmIds(10, null, 2023));
+        assertEquals(List.of(2, 1, 4), index.findTopFilmIds(10));
+    }
+
+    @Test
+    public void correctTopAfterConcurrentLikesAndUnlikes() throws InterruptedException {
+        int films = 200;
+        AtomicIntegerArray expected = new AtomicIntegerArray(films + 1);
+        index.rebuild(() -> IntStream.rangeClosed(1, films).boxed().collect(Collectors.toMap(id -> id, id -> 0)));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 20_000; i++) {
+                    int filmId = random.nextInt(1, films + 1);
+                    if (random.nextInt(3) > 0) {
+                        expected.incrementAndGet(filmId);
+                        index.changeLikes(filmId, 1);
+                    } else if (expected.getAndUpdate(filmId, likes -> likes > 0 ? likes - 1 : likes) > 0) {
+                        index.changeLikes(filmId, -1);
+                    }
+                    index.findTopFilmIds(10);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        List<Integer> expectedTop = new ArrayList<>(IntStream.rangeClosed(1, films).boxed().toList());
+        expectedTop.sort(Comparator.comparingInt((Integer id) -> -expected.get(id)).thenComparingInt(id -> id));
+        assertEquals(expectedTop, index.findTopFilmIds(films));
+    }
+
+    @Test
+    public void noLikesLostWhenRebuildRunsConcurrently() throws InterruptedException {
+        int films = 20_000;
+        AtomicIntegerArray likeCounts = new AtomicIntegerArray(films + 1);
+        index.rebuild(() -> IntStream.rangeClosed(1, films).boxed().collect(Collectors.toMap(id -> id, id -> 0)));
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    int filmId = random.nextInt(1, films + 1);
+                    Lock fence = index.likeChangeFence();
+                    fence.lock();
+                    try {
+                        likeCounts.incrementAndGet(filmId);
+                        index.changeLikes(filmId, 1);
+                    } finally {
+                        fence.unlock();
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < 20; i++) {
+            index.rebuild(() -> IntStream.rangeClosed(1, films).boxed().collect(Collectors.toMap(id -> id, likeCounts::get)));
+        }
+        running.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        List<Integer> expectedTop = new ArrayList<>(IntStream.rangeClosed(1, films).boxed().toList());
+        expectedTop.sort(Comparator.comparingInt((Integer id) -> -likeCounts.get(id)).thenComparingInt(id -> id));
+        assertEquals(expectedTop, index.findTopFilmIds(films));
+    }
+}
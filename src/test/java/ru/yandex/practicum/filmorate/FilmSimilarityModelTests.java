@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmSimilarityModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FilmSimilarityModelTests {
+    private static Map<Integer, int[]> likes() {
+        Map<Integer, int[]> userFilms = new HashMap<>();
+        userFilms.put(1, new int[]{1, 2, 3});
+        userFilms.put(2, new int[]{1, 2});
+        userFilms.put(3, new int[]{2, 4});
+        return userFilms;
+    }
+
+    @Test
+    public void correctSimilarFilmsByCosine() {
+        FilmSimilarityModel model = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        model.rebuild(likes());
+
+        assertArrayEquals(new int[]{2, 3}, model.similarFilms(1, 10));
+        assertArrayEquals(new int[]{1, 3, 4}, model.similarFilms(2, 10));
+        assertArrayEquals(new int[]{1}, model.similarFilms(2, 1));
+        assertArrayEquals(new int[0], model.similarFilms(42, 10));
+        assertTrue(model.estimatedMemoryBytes() > 0);
+    }
+
+    @Test
+    public void correctRecommendationsExcludingLikedFilms() {
+        FilmSimilarityModel model = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        model.rebuild(likes());
+
+        assertArrayEquals(new int[]{3, 4}, model.recommendFilms(2, 10));
+        assertArrayEquals(new int[]{4}, model.recommendFilms(1, 10));
+        assertArrayEquals(new int[0], model.recommendFilms(42, 10));
+    }
+
+    @Test
+    public void correctModelAfterIncrementalLikes() {
+        FilmSimilarityModel model = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        model.rebuild(likes());
+
+        model.addLike(4, 2);
+        model.addLike(4, 2);
+        assertArrayEquals(new int[]{2, 1}, model.similarFilms(4, 10));
+        Map<Integer, int[]> updated = likes();
+        updated.put(2, new int[]{1, 2, 4});
+        FilmSimilarityModel rebuilt = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        rebuilt.rebuild(updated);
+        assertArrayEquals(rebuilt.similarFilms(4, 10), model.similarFilms(4, 10));
+        assertArrayEquals(rebuilt.similarFilms(1, 10), model.similarFilms(1, 10));
+
+        model.removeLike(4, 2);
+        assertArrayEquals(new int[]{2}, model.similarFilms(4, 10));
+        assertArrayEquals(new int[]{2, 3}, model.similarFilms(1, 10));
+    }
+
+    @Test
+    public void correctNeighbourLimitAndHeavyUserCap() {
+        FilmSimilarityModel limited = new FilmSimilarityModel(new SimpleMeterRegistry(), 1, 1000);
+        limited.rebuild(likes());
+        assertArrayEquals(new int[]{1}, limited.similarFilms(2, 10));
+
+        FilmSimilarityModel capped = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 2);
+        capped.rebuild(likes());
+        assertArrayEquals(new int[0], capped.similarFilms(3, 10));
+        assertArrayEquals(new int[]{2}, capped.similarFilms(1, 10));
+    }
+
+    @Test
+    public void likesArrivingDuringRebuildAreKept() {
+        FilmSimilarityModel model = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        model.rebuild(likes());
+        model.rebuild(() -> {
+            Map<Integer, int[]> scanned = likes();
+            model.addLike(4, 2);
+            model.removeLike(3, 1);
+            model.addLike(1, 1);
+            return scanned;
+        });
+
+        Map<Integer, int[]> expected = likes();
+        expected.put(1, new int[]{1, 2});
+        expected.put(2, new int[]{1, 2, 4});
+        FilmSimilarityModel rebuilt = new FilmSimilarityModel(new SimpleMeterRegistry(), 50, 1000);
+        rebuilt.rebuild(expected);
+        for (int filmId = 1; filmId <= 4; filmId++) {
+            assertArrayEquals(rebuilt.similarFilms(filmId, 10), model.similarFilms(filmId, 10));
+        }
+        assertArrayEquals(rebuilt.recommendFilms(1, 10), model.recommendFilms(1, 10));
+        assertEquals(rebuilt.estimatedMemoryBytes(), model.estimatedMemoryBytes());
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendGraphTests {
+    private FriendGraph graph;
+
+    @BeforeEach
+    void beforeEach() {
+        graph = new FriendGraph(new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void correctSortedFriendsAfterAddAndRemove() {
+        graph.addFriend(1, 5);
+        graph.addFriend(1, 2);
+        graph.addFriend(1, 9);
+        graph.addFriend(1, 2);
+        assertArrayEquals(new int[]{2, 5, 9}, graph.friendsOf(1));
+
+        graph.removeFriend(1, 5);
+        graph.removeFriend(1, 7);
+        assertArrayEquals(new int[]{2, 9}, graph.friendsOf(1));
+        assertArrayEquals(new int[0], graph.friendsOf(2));
+
+        graph.removeUser(1);
+        assertArrayEquals(new int[0], graph.friendsOf(1));
+    }
+
+    @Test
+    public void correctCommonFriendsByIntersection() {
+        graph.rebuild(Map.of(
+                1, new int[]{2, 3, 5, 8, 13},
+                2, new int[]{1, 3, 8, 21},
+                3, new int[]{}));
+        assertArrayEquals(new int[]{3, 8}, graph.commonFriends(1, 2));
+        assertArrayEquals(new int[0], graph.commonFriends(1, 3));
+        assertArrayEquals(new int[0], graph.commonFriends(1, 42));
+
+        int[] thousands = IntStream.range(0, 5000).map(i -> i * 2).toArray();
+        int[] otherThousands = IntStream.range(0, 5000).map(i -> i * 3).toArray();
+        graph.rebuild(Map.of(1, thousands, 2, otherThousands));
+        assertEquals(1667, graph.commonFriends(1, 2).length);
+    }
+
+    @Test
+    public void correctFriendsAfterConcurrentAdds() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+            executor.submit(() -> {
+                for (int friendId = offset; friendId < 4000; friendId += 8) {
+                    graph.addFriend(1, friendId);
+                    graph.friendsOf(1);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertArrayEquals(IntStream.range(0, 4000).toArray(), graph.friendsOf(1));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggester;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendSuggesterTests {
+    private FriendGraph graph;
+    private FriendSuggester suggester;
+
+    @BeforeEach
+    void beforeEach() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        graph = new FriendGraph(registry);
+        suggester = new FriendSuggester(graph, registry, 4, 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void afterEach() {
+        suggester.shutdown();
+    }
+
+    @Test
+    public void correctRankingByMutualFriendsExcludingSelfAndFriends() {
+        graph.rebuild(Map.of(
+                1, new int[]{2, 3, 4},
+                2, new int[]{1, 3, 5, 6},
+                3, new int[]{5, 7},
+                4, new int[]{6, 5}));
+        assertArrayEquals(new int[]{5, 6, 7}, suggester.suggest(1, 10).join());
+        assertArrayEquals(new int[]{5}, suggester.suggest(1, 1).join());
+        assertArrayEquals(new int[0], suggester.suggest(42, 10).join());
+    }
+
+    @Test
+    public void correctSuggestionsAfterInvalidation() {
+        graph.rebuild(Map.of(1, new int[]{2}, 2, new int[]{3, 4}));
+        assertArrayEquals(new int[]{3, 4}, suggester.suggest(1, 10).join());
+
+        graph.addFriend(1, 3);
+        assertArrayEquals(new int[]{3, 4}, suggester.suggest(1, 10).join());
+        suggester.invalidate(1);
+        assertArrayEquals(new int[]{4}, suggester.suggest(1, 10).join());
+    }
+
+    @Test
+    public void correctSuggestionsForUserFollowingHubs() {
+        Map<Integer, int[]> adjacency = new HashMap<>();
+        int[] hubs = IntStream.rangeClosed(2, 201).toArray();
+        adjacency.put(1, hubs);
+        for (int hub : hubs) {
+            adjacency.put(hub, IntStream.range(0, 1000).map(i -> 1000 + (hub * 7 + i) % 100_000).sorted().toArray());
+        }
+        graph.rebuild(adjacency);
+
+        int[] expected = new int[100_000 + 1000];
+        for (int hub : hubs) {
+            for (int candidate : adjacency.get(hub)) {
+                expected[candidate]++;
+            }
+        }
+        int[] top = suggester.suggest(1, 100).join();
+        assertEquals(100, top.length);
+        for (int i = 1; i < top.length; i++) {
+            int previous = expected[top[i - 1]];
+            int current = expected[top[i]];
+            assertTrue(previous > current || previous == current && top[i - 1] < top[i]);
+        }
+        int best = IntStream.range(0, expected.length).reduce((a, b) -> expected[b] > expected[a] ? b : a).getAsInt();
+        assertEquals(best, top[0]);
+    }
+}
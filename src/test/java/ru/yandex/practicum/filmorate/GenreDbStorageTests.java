@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exceptions.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
@@ -12,13 +13,16 @@ import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class GenreDbStorageTests {
     private final GenreDbStorage storage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     public void getCorrectGenreByID() {
@@ -37,4 +41,22 @@ public class GenreDbStorageTests {
         final GenreNotFoundException exception = assertThrows(GenreNotFoundException.class, () -> storage.getGenreByID(99));
         assertEquals("Жанр с ID 99 не найден в базе", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getCachedGenresAndRefreshAfterTableChange() {
+        long hitsBefore = storage.getCache().getHitCount();
+        long missesBefore = storage.getCache().getMissCount();
+        assertSame(storage.getGenreByID(1), storage.getGenreByID(1));
+        assertThrows(GenreNotFoundException.class, () -> storage.getGenreByID(7));
+        assertEquals(hitsBefore + 2, storage.getCache().getHitCount());
+        assertEquals(missesBefore + 1, storage.getCache().getMissCount());
+
+        long versionBefore = storage.getVersion();
+        jdbcTemplate.update("MERGE INTO genres (id, name) VALUES (7, 'Фантастика')");
+        storage.refreshCache();
+        assertEquals("Фантастика", storage.getGenreByID(7).getName());
+        assertTrue(storage.getVersion() > versionBefore);
+        jdbcTemplate.update("DELETE FROM genres WHERE id = 7");
+        storage.refreshCache();
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.IdBitmap;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdBitmapTests {
+
+    @Test
+    public void correctMembershipAtPageAndWordBoundaries() {
+        IdBitmap ids = new IdBitmap("test");
+        for (int id : new int[]{0, 63, 64, 65_535, 65_536, Integer.MAX_VALUE}) {
+            assertTrue(ids.add(id));
+            assertFalse(ids.add(id));
+            assertTrue(ids.contains(id));
+        }
+        assertFalse(ids.contains(1));
+        assertFalse(ids.contains(-1));
+        assertFalse(ids.contains(65_537));
+        assertEquals(6, ids.size());
+
+        assertTrue(ids.remove(64));
+        assertFalse(ids.remove(64));
+        assertFalse(ids.contains(64));
+        assertTrue(ids.contains(63));
+        assertEquals(5, ids.size());
+    }
+
+    @Test
+    public void correctMemoryForFiftyMillionIds() {
+        IdBitmap ids = new IdBitmap("test");
+        long empty = ids.memoryBytes();
+        for (int id = 1; id <= 50_000_000; id += 65_536) {
+            ids.add(id);
+        }
+        ids.add(50_000_000);
+        long footprint = ids.memoryBytes() - empty;
+        assertEquals(763, footprint / (8 * 1024 + 32));
+        assertTrue(ids.memoryBytes() < 7 * 1024 * 1024);
+    }
+
+    @Test
+    public void correctSizeAfterConcurrentAddsAndRemoves() throws InterruptedException {
+        IdBitmap ids = new IdBitmap("test");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+            executor.submit(() -> {
+                for (int id = offset; id < 400_000; id += 8) {
+                    ids.add(id);
+                    ids.add(id / 2);
+                    if (id % 3 == 0) {
+                        ids.remove(id);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        int expected = 0;
+        for (int id = 0; id < 400_000; id++) {
+            if (ids.contains(id)) {
+                expected++;
+            }
+        }
+        assertEquals(expected, ids.size());
+        assertTrue(ids.contains(1));
+        assertTrue(ids.contains(399_998));
+    }
+}
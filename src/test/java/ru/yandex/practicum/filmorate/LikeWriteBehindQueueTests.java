@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.LikeQueueFullException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.capacity=3",
+        "filmorate.likes.write-behind.flush-size=2",
+        "filmorate.likes.write-behind.flush-interval-ms=600000",
+        "filmorate.likes.write-behind.offer-timeout-ms=10"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class LikeWriteBehindQueueTests {
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LikeWriteBehindQueue likeQueue;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void correctLikesAfterDeduplicatedFlush() {
+        addUsersAndFilms();
+        synchronized (likeQueue) {
+            filmService.addLike(1, 1);
+            filmService.removeLike(1, 1);
+            filmService.addLike(1, 1);
+            filmService.addLike(2, 1);
+            filmService.removeLike(2, 1);
+            assertEquals(2, likeQueue.size());
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class));
+        }
+        likeQueue.flush();
+        assertEquals(0, likeQueue.size());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE film_id = 1", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT like_count FROM films WHERE id = 2", Integer.class));
+        assertEquals(0, likeQueue.flush());
+    }
+
+    @Test
+    void getExceptionWhenQueueIsFullAndNotFoundChecksStaySynchronous() {
+        addUsersAndFilms();
+        synchronized (likeQueue) {
+            filmService.addLike(1, 1);
+            filmService.addLike(1, 2);
+            filmService.addLike(2, 1);
+            final LikeQueueFullException exception = assertThrows(LikeQueueFullException.class, () -> filmService.addLike(2, 2));
+            assertEquals("Очередь лайков переполнена, повторите запрос позже", exception.getMessage());
+            filmService.removeLike(1, 1);
+        }
+        assertThrows(FilmNotFoundException.class, () -> filmService.addLike(99, 1));
+        likeQueue.flush();
+        filmService.addLike(2, 2);
+        likeQueue.flush();
+        assertEquals(List.of(2, 1), filmService.findTopLikedFilms(2).stream().map(Film::getId).toList());
+    }
+
+    private void addUsersAndFilms() {
+        userService.addUser(User.builder().email("u1@u.com").login("u1").birthday(LocalDate.now()).build());
+        userService.addUser(User.builder().email("u2@u.com").login("u2").birthday(LocalDate.now()).build());
+        for (String name : List.of("f1", "f2")) {
+            filmService.addFilm(Film.builder().name(name).description("d").releaseDate(LocalDate.now())
+                    .duration(100).mpa(MPA.builder().id(1).build()).build());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exceptions.MpaNotFoundException;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
@@ -12,6 +13,7 @@ import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
@@ -19,6 +21,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 public class MpaDbStorageTests {
     private final MpaDbStorage storage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     public void getCorrectMpaByID() {
@@ -37,4 +40,20 @@ public class MpaDbStorageTests {
         final MpaNotFoundException exception = assertThrows(MpaNotFoundException.class, () -> storage.getMpaByID(85));
         assertEquals("Рейтинг с ID 85 не найден в базе", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void getCachedMpaAndRefreshAfterTableChange() {
+        long hitsBefore = storage.getCache().getHitCount();
+        long missesBefore = storage.getCache().getMissCount();
+        assertSame(storage.getMpaByID(2), storage.getMpaByID(2));
+        assertThrows(MpaNotFoundException.class, () -> storage.getMpaByID(6));
+        assertEquals(hitsBefore + 2, storage.getCache().getHitCount());
+        assertEquals(missesBefore + 1, storage.getCache().getMissCount());
+
+        jdbcTemplate.update("MERGE INTO mpa (id, name) VALUES (6, 'X')");
+        storage.refreshCache();
+        assertEquals("X", storage.getMpaByID(6).getName());
+        jdbcTemplate.update("DELETE FROM mpa WHERE id = 6");
+        storage.refreshCache();
+    }
+}
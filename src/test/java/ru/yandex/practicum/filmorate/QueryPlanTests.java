@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmSort;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
+import ru.yandex.practicum.filmorate.model.LikeChange;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSort;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Прогоняет все методы хранилищ на заполненной базе, записывает каждый выполненный SQL-запрос
+ * и проверяет его план через EXPLAIN: запрос к большой таблице должен идти по индексу с условием
+ * или по упорядоченному индексу до LIMIT. Полные чтения допускаются только для запросов из {@link #FULL_READS}.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class QueryPlanTests {
+    private static final Set<String> LARGE_TABLES = Set.of("FILMS", "USERS", "LIKES", "FRIENDSHIP", "FILM_GENRES");
+    /**
+     * Запросы, которые по назначению читают таблицу целиком: выгрузки, построение индексов в памяти при старте
+     * и сверка счётчиков.
+     */
+    private static final Set<String> FULL_READS = Set.of(
+            "SELECT f.* FROM films AS f ORDER BY f.id",
+            "SELECT film_id, genre_id FROM film_genres ORDER BY film_id, genre_id",
+            "SELECT f.*, fg.genre_id FROM films AS f LEFT JOIN film_genres AS fg ON f.id = fg.film_id ORDER BY f.id",
+            "SELECT id FROM films",
+            "SELECT id, like_count FROM films",
+            "SELECT f.id, EXTRACT(YEAR FROM f.release_date) AS release_year, fg.genre_id " +
+                    "FROM films AS f LEFT JOIN film_genres AS fg ON f.id = fg.film_id",
+            "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id",
+            "SELECT id, name, description FROM films ORDER BY id",
+            "UPDATE films AS f SET like_count = (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id) " +
+                    "WHERE like_count <> (SELECT COUNT(*) FROM likes AS l WHERE l.film_id = f.id)",
+            "SELECT id FROM users",
+            "SELECT user_id, friend_id FROM friendship",
+            "SELECT * FROM users",
+            "SELECT * FROM users ORDER BY id");
+    private static final Pattern SCAN = Pattern.compile("/\\* PUBLIC\\.([A-Z0-9_]+?)(\\.tableScan)?(:[^*]*)? \\*/");
+    private static final int USERS = 2000;
+    private static final int FILMS = 2000;
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final GenreDbStorage genreStorage;
+    private final MpaDbStorage mpaStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final SqlStatementRecorder recorder;
+
+    @TestFactory
+    public Stream<DynamicTest> everyStorageQueryUsesIndexOnLargeTables() {
+        seed();
+        recorder.start();
+        try {
+            exerciseStorages();
+        } finally {
+            recorder.stop();
+        }
+        Map<String, Map<Integer, Object>> statements = recorder.getStatements();
+        assertFalse(statements.isEmpty());
+        return statements.entrySet().stream()
+                .filter(statement -> !statement.getKey().startsWith("INSERT") || statement.getKey().contains("SELECT"))
+                .map(statement -> DynamicTest.dynamicTest(statement.getKey(),
+                        () -> checkPlan(statement.getKey(), explain(statement.getKey(), statement.getValue()))));
+    }
+
+    private void seed() {
+        Random random = new Random(17);
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= USERS; i++) {
+            users.add(User.builder().email("user" + i + "@mail.ru").login("user" + i).name("Пользователь " + i)
+                    .birthday(LocalDate.of(1990, 1, 1)).build());
+        }
+        userStorage.addUsers(users);
+        List<Film> films = new ArrayList<>();
+        for (int i = 1; i <= FILMS; i++) {
+            films.add(Film.builder().name("Фильм " + i).description("Описание фильма " + i)
+                    .releaseDate(LocalDate.of(1990 + i % 30, 1, 1)).duration(90).mpa(MPA.builder().id(1 + i % 5).build())
+                    .genres(List.of(Genre.builder().id(1 + i % 6).build())).build());
+        }
+        filmStorage.addFilms(films);
+        List<LikeChange> likes = new ArrayList<>();
+        for (int i = 0; i < 10 * USERS; i++) {
+            likes.add(new LikeChange(1 + random.nextInt(FILMS), 1 + random.nextInt(USERS), true));
+        }
+        filmStorage.applyLikeChanges(likes.stream().distinct().toList());
+        for (int i = 0; i < 5 * USERS; i++) {
+            userStorage.addFriendship(1 + random.nextInt(USERS), 1 + random.nextInt(USERS));
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void exerciseStorages() {
+        filmStorage.init();
+        filmStorage.getAllFilms();
+        filmStorage.streamAllFilms(film -> {
+        });
+        for (FilmSort sort : FilmSort.values()) {
+            filmStorage.getFilmsPage(sort, null, 10);
+        }
+        filmStorage.getFilmsPage(FilmSort.ID, new KeysetCursor(null, 100), 10);
+        filmStorage.getFilmsPage(FilmSort.NAME, new KeysetCursor("Фильм 100", 100), 10);
+        filmStorage.getFilmsPage(FilmSort.RELEASE_DATE, new KeysetCursor("2000-01-01", 100), 10);
+        Film film = filmStorage.addFilm(Film.builder().name("Новый").description("Новый фильм")
+                .releaseDate(LocalDate.of(2024, 1, 1)).duration(100).mpa(MPA.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(2).build())).build());
+        filmStorage.updateFilm(film.toBuilder().name("Обновлённый").build());
+        filmStorage.getFilmByID(film.getId());
+        filmStorage.addLike(film.getId(), 1);
+        filmStorage.addLike(film.getId(), 1);
+        filmStorage.removeLike(film.getId(), 1);
+        filmStorage.removeLike(film.getId(), 1);
+        filmStorage.applyLikeChanges(List.of(new LikeChange(film.getId(), 2, true), new LikeChange(1, 2, false)));
+        filmStorage.idIsPresent(FILMS * 10);
+        filmStorage.findTopLikedFilms(10);
+        filmStorage.findTopLikedFilms(10, 1, 2000);
+        filmStorage.getSimilarFilms(1, 10);
+        filmStorage.getRecommendedFilms(1, 10);
+        filmStorage.searchFilms("фильм", 10);
+        filmStorage.reconcileLikeCounts();
+        filmStorage.applyLikeChanges(List.of(new LikeChange(film.getId(), 2, false)));
+        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
+        filmStorage.deleteFilmByID(film.getId());
+
+        userStorage.init();
+        userStorage.getAllUsers();
+        userStorage.streamAllUsers(user -> {
+        });
+        for (UserSort sort : UserSort.values()) {
+            userStorage.getUsersPage(sort, null, 10);
+        }
+        userStorage.getUsersPage(UserSort.ID, new KeysetCursor(null, 100), 10);
+        userStorage.getUsersPage(UserSort.NAME, new KeysetCursor("Пользователь 100", 100), 10);
+        User user = userStorage.addUser(User.builder().email("new@mail.ru").login("new").name("Новый")
+                .birthday(LocalDate.of(2000, 1, 1)).build());
+        userStorage.addUsers(List.of(User.builder().email("new@mail.ru").login("other").name("Дубль")
+                .birthday(LocalDate.of(2000, 1, 1)).build()));
+        user.setName("Обновлённый");
+        userStorage.updateUser(user);
+        userStorage.findUserByID(user.getId());
+        userStorage.addFriendship(user.getId(), 1);
+        userStorage.getFriendsOfUser(user.getId());
+        userStorage.getFriendsCrossing(user.getId(), 1);
+        userStorage.getUsersByIds(new int[]{1, 2, 3});
+        userStorage.idIsPresent(USERS * 10);
+        userStorage.removeFriendship(user.getId(), 1);
+        userStorage.deleteUserByID(user.getId());
+
+        genreStorage.refreshCache();
+        mpaStorage.refreshCache();
+    }
+
+    private String explain(String sql, Map<Integer, Object> parameters) throws Exception {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        try (var connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (Map.Entry<Integer, Object> parameter : parameters.entrySet()) {
+                statement.setObject(parameter.getKey(), parameter.getValue());
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        }
+    }
+
+    private void checkPlan(String sql, String plan) {
+        boolean fullRead = FULL_READS.contains(sql);
+        boolean limited = sql.contains(" LIMIT ");
+        Matcher matcher = SCAN.matcher(plan);
+        List<String> problems = new ArrayList<>();
+        boolean scansLargeTable = false;
+        while (matcher.find()) {
+            String table = tableOf(matcher.group(1));
+            boolean tableScan = matcher.group(2) != null;
+            boolean withCondition = matcher.group(3) != null;
+            if (!LARGE_TABLES.contains(table) || withCondition || fullRead) {
+                scansLargeTable |= LARGE_TABLES.contains(table) && !withCondition;
+                continue;
+            }
+            if (tableScan || !limited) {
+                problems.add(matcher.group());
+            }
+        }
+        if (!problems.isEmpty()) {
+            fail("Запрос читает большую таблицу целиком " + problems + ":\n" + sql + "\nПлан:\n" + plan);
+        }
+        if (fullRead) {
+            assertTrue(scansLargeTable, "Запрос из списка полных чтений больше не читает таблицу целиком, "
+                    + "уберите его из списка:\n" + sql + "\nПлан:\n" + plan);
+        }
+    }
+
+    /**
+     * Имя таблицы по имени индекса из плана: для индексов схемы и первичных ключей таблица берётся из метаданных.
+     */
+    private String tableOf(String indexOrTable) {
+        if (LARGE_TABLES.contains(indexOrTable)) {
+            return indexOrTable;
+        }
+        List<String> tables = jdbcTemplate.queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.INDEXES " +
+                "WHERE INDEX_SCHEMA = 'PUBLIC' AND INDEX_NAME = ?", String.class, indexOrTable);
+        return tables.isEmpty() ? indexOrTable : tables.get(0);
+    }
+
+    @TestConfiguration
+    static class RecorderConfiguration {
+        @Bean
+        SqlStatementRecorder sqlStatementRecorder() {
+            return new SqlStatementRecorder();
+        }
+
+        @Bean
+        static BeanPostProcessor recordingDataSourcePostProcessor(ObjectProvider<SqlStatementRecorder> recorder) {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? recorder.getObject().wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+}
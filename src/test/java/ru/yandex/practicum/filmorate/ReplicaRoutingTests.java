@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.controllers.ClientWritesInterceptor;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.ClientWrites;
+import ru.yandex.practicum.filmorate.storage.ReplicaRoutingPostProcessor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@SpringBootTest(properties = {
+        "filmorate.replica.enabled=true",
+        "filmorate.replica.url=jdbc:h2:mem:filmorate-replica-test;DB_CLOSE_DELAY=-1",
+        "filmorate.replica.sync-interval=20ms",
+        "filmorate.replica.max-lag=30s"
+})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class ReplicaRoutingTests {
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ReplicaRoutingPostProcessor replicaRouting;
+    private final MeterRegistry meterRegistry;
+    private final ClientWritesInterceptor clientWritesInterceptor;
+
+    @Test
+    public void readOnlyServiceMethodsReadReplicatedRowsFromReplica() throws InterruptedException {
+        User first = userService.addUser(user("first"));
+        User second = userService.addUser(user("second"));
+        userService.addFriendship(first.getId(), second.getId());
+        awaitReplicaAfter(System.nanoTime());
+
+        double replicaReadsBefore = route("replica", "read-only").count();
+        List<User> friends = userService.getFriendsOfUser(first.getId());
+
+        assertEquals(List.of(second.getId()), friends.stream().map(User::getId).toList());
+        assertEquals(replicaReadsBefore + 1, route("replica", "read-only").count());
+        assertEquals(1, readOnly(() -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM friendship WHERE user_id = ?", Integer.class, first.getId())));
+    }
+
+    @Test
+    public void clientReadsPrimaryUntilReplicaCatchesUpWithItsWrite() throws InterruptedException {
+        ClientWrites clientWrites = replicaRouting.getClientWrites();
+        awaitReplicaAfter(System.nanoTime());
+        double ownWritesBefore = route("primary", "read-your-writes").count();
+
+        clientWrites.begin("client", true);
+        readOnly(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        clientWrites.end("client", true);
+        assertEquals(ownWritesBefore + 1, route("primary", "read-your-writes").count());
+
+        awaitReplicaAfter(System.nanoTime());
+        double replicaReadsBefore = route("replica", "read-only").count();
+        clientWrites.begin("client", false);
+        readOnly(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        clientWrites.end("client", false);
+        assertEquals(replicaReadsBefore + 1, route("replica", "read-only").count());
+        assertEquals(ownWritesBefore + 1, route("primary", "read-your-writes").count());
+    }
+
+    @Test
+    public void clientReadsPrimaryWhileAnyOfItsWritesIsInFlight() throws InterruptedException {
+        ClientWrites clientWrites = replicaRouting.getClientWrites();
+        clientWrites.begin("overlapping", true);
+        clientWrites.begin("overlapping", true);
+        clientWrites.end("overlapping", true);
+        awaitReplicaAfter(System.nanoTime());
+        double ownWritesBefore = route("primary", "read-your-writes").count();
+
+        clientWrites.begin("overlapping", false);
+        readOnly(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        clientWrites.end("overlapping", false);
+        assertEquals(ownWritesBefore + 1, route("primary", "read-your-writes").count());
+
+        clientWrites.end("overlapping", true);
+        awaitReplicaAfter(System.nanoTime());
+        double replicaReadsBefore = route("replica", "read-only").count();
+        clientWrites.begin("overlapping", false);
+        readOnly(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        clientWrites.end("overlapping", false);
+        assertEquals(replicaReadsBefore + 1, route("replica", "read-only").count());
+    }
+
+    @Test
+    public void asyncWriteRequestIsCountedOnce() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/users");
+        request.addHeader("X-Client-Id", "async");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        clientWritesInterceptor.preHandle(request, response, null);
+        clientWritesInterceptor.afterConcurrentHandlingStarted(request, response, null);
+        request.setDispatcherType(DispatcherType.ASYNC);
+        clientWritesInterceptor.preHandle(request, response, null);
+        clientWritesInterceptor.afterCompletion(request, response, null, null);
+
+        awaitReplicaAfter(System.nanoTime());
+        double replicaReadsBefore = route("replica", "read-only").count();
+        ClientWrites clientWrites = replicaRouting.getClientWrites();
+        clientWrites.begin("async", false);
+        readOnly(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class));
+        clientWrites.end("async", false);
+        assertEquals(replicaReadsBefore + 1, route("replica", "read-only").count());
+    }
+
+    private <T> T readOnly(Supplier<T> action) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> action.get());
+    }
+
+    /**
+     * Ждёт, пока реплика получит все изменения, зафиксированные до отметки {@code since}.
+     */
+    private void awaitReplicaAfter(long since) throws InterruptedException {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            double lag = meterRegistry.get("filmorate.replica.lag").gauge().value();
+            if (!Double.isNaN(lag) && lag * 1e9 < System.nanoTime() - since) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Реплика не догнала основную БД");
+    }
+
+    private Counter route(String target, String reason) {
+        return meterRegistry.get("filmorate.datasource.routes").tags("target", target, "reason", reason).counter();
+    }
+
+    private static User user(String login) {
+        return User.builder().email(login + "@mail.ru").login(login).name(login).birthday(LocalDate.of(2000, 1, 1)).build();
+    }
+}
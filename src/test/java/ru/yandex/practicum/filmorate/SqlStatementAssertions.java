@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.function.ThrowingSupplier;
+import ru.yandex.practicum.filmorate.storage.SqlStatementScope;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Проверки числа SQL-запросов, выполненных действием в текущем потоке: ловят N+1 и другие лишние запросы.
+ */
+public final class SqlStatementAssertions {
+    private SqlStatementAssertions() {
+    }
+
+    public static int countStatements(ThrowingSupplier<?> action) {
+        try (SqlStatementScope scope = SqlStatementScope.open()) {
+            try {
+                action.get();
+            } catch (Throwable e) {
+                fail("Действие завершилось ошибкой", e);
+            }
+            return scope.getStatements();
+        }
+    }
+
+    public static <T> T assertStatementsAtMost(int budget, ThrowingSupplier<T> action) {
+        Object[] result = new Object[1];
+        int statements = countStatements(() -> result[0] = action.get());
+        assertTrue(statements <= budget, "Выполнено " + statements + " SQL-запросов при бюджете " + budget);
+        @SuppressWarnings("unchecked")
+        T value = (T) result[0];
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+package ru.yandex.practicum.filmorate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Обёртка над DataSource для тестов: запоминает текст каждого выполненного SQL-запроса
+ * вместе с параметрами последнего выполнения. Запись идёт только между {@link #start()} и {@link #stop()}.
+ */
+public class SqlStatementRecorder {
+    private final Map<String, Map<Integer, Object>> statements = new LinkedHashMap<>();
+    private volatile boolean recording;
+
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, (method, args, result) ->
+                method.getName().equals("getConnection") ? wrapConnection((Connection) result) : result);
+    }
+
+    public void start() {
+        recording = true;
+    }
+
+    public void stop() {
+        recording = false;
+    }
+
+    /**
+     * Выполненные запросы в порядке первого выполнения и параметры их последнего выполнения по номеру.
+     */
+    public synchronized Map<String, Map<Integer, Object>> getStatements() {
+        return new LinkedHashMap<>(statements);
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (method, args, result) -> {
+            if (method.getName().equals("prepareStatement")) {
+                return wrapPreparedStatement((PreparedStatement) result, (String) args[0]);
+            }
+            if (method.getName().equals("createStatement")) {
+                return wrapStatement((Statement) result);
+            }
+            return result;
+        });
+    }
+
+    private Statement wrapStatement(Statement statement) {
+        return proxy(Statement.class, statement, (method, args, result) -> {
+            if (method.getName().startsWith("execute") || method.getName().equals("addBatch")) {
+                record((String) args[0], Map.of());
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrapPreparedStatement(PreparedStatement statement, String sql) {
+        Map<Integer, Object> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, statement, (method, args, result) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.put(index, args[1]);
+            } else if (name.startsWith("execute") || name.equals("addBatch")) {
+                record(sql, new TreeMap<>(parameters));
+            }
+            return result;
+        });
+    }
+
+    private synchronized void record(String sql, Map<Integer, Object> parameters) {
+        if (recording) {
+            statements.put(sql, parameters);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, ResultWrapper wrapper) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            return wrapper.wrap(method, args, result);
+        });
+    }
+
+    @FunctionalInterface
+    private interface ResultWrapper {
+        Object wrap(Method method, Object[] args, Object result) throws Exception;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.sql.budget.default=0")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class StorageMetricsTests {
+    private final FilmDbStorage filmStorage;
+    private final GenreDbStorage genreStorage;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final WebApplicationContext context;
+
+    @Test
+    public void storageCallsAreTimedWithOutcome() {
+        genreStorage.getAllGenres();
+        genreStorage.getAllGenres();
+        assertThrows(FilmNotFoundException.class, () -> filmStorage.getFilmByID(9999));
+
+        assertEquals(2, storageTimer("GenreStorage", "GenreDbStorage", "getAllGenres", "success").count());
+        assertEquals(0, storageTimer("GenreStorage", "GenreDbStorage", "getAllGenres", "error").count());
+        assertEquals(1, storageTimer("FilmStorage", "FilmDbStorage", "getFilmByID", "error").count());
+        assertTrue(storageTimer("GenreStorage", "GenreDbStorage", "getAllGenres", "success").takeSnapshot().percentileValues().length > 0);
+    }
+
+    @Test
+    public void jdbcStatementsAndRowsAreCounted() {
+        Timer queries = meterRegistry.get("filmorate.jdbc.statements").tags("kind", "query", "outcome", "success").timer();
+        DistributionSummary rowsRead = meterRegistry.get("filmorate.jdbc.rows").tag("kind", "query").summary();
+        DistributionSummary rowsUpdated = meterRegistry.get("filmorate.jdbc.rows").tag("kind", "update").summary();
+        long queriesBefore = queries.count();
+        double rowsReadBefore = rowsRead.totalAmount();
+        double rowsUpdatedBefore = rowsUpdated.totalAmount();
+
+        assertEquals(6, jdbcTemplate.queryForList("SELECT id FROM genres", Integer.class).size());
+        jdbcTemplate.update("UPDATE genres SET name = name");
+
+        assertEquals(queriesBefore + 1, queries.count());
+        assertEquals(rowsReadBefore + 6, rowsRead.totalAmount());
+        assertEquals(rowsUpdatedBefore + 6, rowsUpdated.totalAmount());
+    }
+
+    @Test
+    public void sqlStatementsPerRequestAreComparedWithEndpointBudget() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES ('a@a.ru', 'a', 'a', '2000-01-01')");
+        filmStorage.addFilm(Film.builder().name("f").description("d").releaseDate(LocalDate.of(2000, 1, 1)).duration(90)
+                .mpa(MPA.builder().id(1).build()).build());
+
+        mockMvc.perform(get("/films/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/users/1/friends")).andExpect(status().isOk());
+        mockMvc.perform(get("/users")).andExpect(status().isOk());
+
+        assertEquals(1, meterRegistry.get("filmorate.sql.request.statements").tag("endpoint", "GET /films/{id}").summary().count());
+        assertEquals(0, meterRegistry.get("filmorate.sql.budget.exceeded").tag("endpoint", "GET /films/{id}").counter().count());
+        assertEquals(0, meterRegistry.get("filmorate.sql.budget.exceeded").tag("endpoint", "GET /users/{userID}/friends").counter().count());
+        assertEquals(1, meterRegistry.get("filmorate.sql.budget.exceeded").tag("endpoint", "GET /users").counter().count());
+    }
+
+    @Test
+    public void asyncRequestIsMeasuredOnceWithWorkerStatements() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        User user = userService.addUser(user("b"));
+        User friend = userService.addUser(user("c"));
+        User friendOfFriend = userService.addUser(user("d"));
+        userService.addFriendship(user.getId(), friend.getId());
+        userService.addFriendship(friend.getId(), friendOfFriend.getId());
+        String endpoint = "GET /users/{userID}/friends/suggestions";
+
+        MvcResult started = mockMvc.perform(get("/users/{id}/friends/suggestions", user.getId()).param("limit", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(friendOfFriend.getId()));
+
+        DistributionSummary statements = meterRegistry.get("filmorate.sql.request.statements").tag("endpoint", endpoint).summary();
+        assertEquals(1, statements.count());
+        assertEquals(1, statements.totalAmount());
+    }
+
+    private static User user(String login) {
+        return User.builder().email(login + "@mail.ru").login(login).name(login).birthday(LocalDate.of(2000, 1, 1)).build();
+    }
+
+    private Timer storageTimer(String storage, String implementation, String method, String outcome) {
+        return meterRegistry.get("filmorate.storage.calls")
+                .tags("storage", storage, "implementation", implementation, "method", method, "outcome", outcome)
+                .timer();
+    }
+}
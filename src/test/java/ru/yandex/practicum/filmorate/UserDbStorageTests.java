@@ -5,15 +5,22 @@ import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.annotation.DirtiesContext;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
+import ru.yandex.practicum.filmorate.model.KeysetCursor;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserSort;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static ru.yandex.practicum.filmorate.SqlStatementAssertions.countStatements;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -208,4 +215,58 @@ public class UserDbStorageTests {
     public void getFalseWhenIdNotPresent() {
         assertFalse(storage.idIsPresent(85858));
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(18)
+    public void correctPagesByIdAndName() {
+        storage.addUser(User.builder().email("1@1.ru").login("u1").name("b").birthday(LocalDate.now()).build());
+        storage.addUser(User.builder().email("2@2.ru").login("u2").name("a").birthday(LocalDate.now()).build());
+        storage.addUser(User.builder().email("3@3.ru").login("u3").name("b").birthday(LocalDate.now()).build());
+
+        assertEquals(List.of(1, 2), storage.getUsersPage(UserSort.ID, null, 2).stream().map(User::getId).toList());
+        assertEquals(List.of(3), storage.getUsersPage(UserSort.ID, new KeysetCursor(null, 2), 2).stream().map(User::getId).toList());
+        assertEquals(List.of(1, 3), storage.getUsersPage(UserSort.NAME, new KeysetCursor("a", 2), 5).stream().map(User::getId).toList());
+    }
+
+    @Test
+    @Order(19)
+    public void correctStreamAllUsersInIdOrder() {
+        storage.addUser(User.builder().email("1@1.ru").login("u1").name("n1").birthday(LocalDate.now()).build());
+        storage.addUser(User.builder().email("2@2.ru").login("u2").name("n2").birthday(LocalDate.now()).build());
+        List<Integer> streamedIds = new ArrayList<>();
+        storage.streamAllUsers(user -> streamedIds.add(user.getId()));
+        assertEquals(List.of(1, 2), streamedIds);
+    }
+
+    @Test
+    @Order(20)
+    public void correctBatchAddSkipsTakenEmailsAndLogins() {
+        storage.addUser(User.builder().email("1@1.ru").login("u1").name("n1").birthday(LocalDate.now()).build());
+        List<User> batch = List.of(
+                User.builder().email("2@2.ru").login("u2").birthday(LocalDate.now()).build(),
+                User.builder().email("1@1.ru").login("u3").name("n3").birthday(LocalDate.now()).build(),
+                User.builder().email("4@4.ru").login("u2").name("n4").build(),
+                User.builder().email("5@5.ru").login("u5").name("n5").build());
+
+        Map<Integer, String> rejected = storage.addUsers(batch);
+        assertEquals(Set.of(1, 2), rejected.keySet());
+        assertEquals("Пользователь с email 1@1.ru уже существует", rejected.get(1));
+        assertEquals("Пользователь с логином u2 уже существует", rejected.get(2));
+        assertEquals(2, batch.get(0).getId());
+        assertEquals("u2", storage.findUserByID(2).getName());
+        assertEquals("u5", storage.findUserByID(batch.get(3).getId()).getLogin());
+        assertEquals(3, storage.getAllUsers().size());
+    }
+
+    @Test
+    @Order(21)
+    public void userKeptByForeignKeyStaysInIdBitmapAfterFailedDelete() {
+        storage.addUser(User.builder().email("1@1.ru").login("u1").name("n1").birthday(LocalDate.now()).build());
+        storage.addUser(User.builder().email("2@2.ru").login("u2").name("n2").birthday(LocalDate.now()).build());
+        storage.addFriendship(1, 2);
+        assertThrows(DataIntegrityViolationException.class, () -> storage.deleteUserByID(1));
+
+        assertEquals(0, countStatements(() -> storage.idIsPresent(1)));
+        assertTrue(storage.idIsPresent(1));
+    }
+}
@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.yandex.practicum.filmorate.controllers.UserController;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.UserImportReport;
+import ru.yandex.practicum.filmorate.service.UserImportService;
+import ru.yandex.practicum.filmorate.service.UserService;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.users.import.batch-size=2")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class UserImportServiceTests {
+    private final UserImportService userImportService;
+    private final UserService userService;
+    private final UserController controller;
+
+    @Test
+    void correctImportUsersWithPerRowErrors() throws Exception {
+        userService.addUser(User.builder().email("123@123.ru").login("taken").birthday(LocalDate.now()).build());
+        String body = "[" +
+                "{\"email\":\"a@a.ru\",\"login\":\"a\",\"birthday\":\"2000-01-01\"}," +
+                "{\"email\":\"123@123.ru\",\"login\":\"other\"}," +
+                "{\"email\":\"bad-email\",\"login\":\"b\"}," +
+                "{\"email\":\"c@c.ru\",\"login\":\"c\",\"name\":\"C\"}," +
+                "{\"email\":\"d@d.ru\",\"login\":\"c\"}" +
+                "]";
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(3))
+                .andExpect(jsonPath("$.errors[0].row").value(1))
+                .andExpect(jsonPath("$.errors[0].message").value("Пользователь с email 123@123.ru уже существует"))
+                .andExpect(jsonPath("$.errors[1].row").value(2))
+                .andExpect(jsonPath("$.errors[1].message").value("Некорректный формат email."))
+                .andExpect(jsonPath("$.errors[2].row").value(4))
+                .andExpect(jsonPath("$.errors[2].login").value("c"));
+        assertEquals(3, userService.getAllUsers().size());
+        assertEquals("a", userService.getUserByID(2).getName());
+    }
+
+    @Test
+    void correctImportRejectsOnlyRowWithWrongFieldType() {
+        String body = "[" +
+                "{\"email\":\"a@a.ru\",\"login\":\"a\"}," +
+                "{\"email\":\"b@b.ru\",\"login\":\"b\",\"birthday\":\"x\"}," +
+                "42," +
+                "{\"email\":\"c@c.ru\",\"login\":\"c\"}" +
+                "]";
+        UserImportReport report = userImportService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getFailed());
+        assertEquals(1, report.getErrors().get(0).getRow());
+        assertEquals(2, report.getErrors().get(1).getRow());
+        assertEquals(2, userService.getAllUsers().size());
+    }
+
+    @Test
+    void correctImportStopsOnMalformedJsonKeepingEarlierRows() {
+        String body = "[{\"email\":\"a@a.ru\",\"login\":\"a\"}, {\"email\": ";
+        UserImportReport report = userImportService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(1, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(1, report.getErrors().get(0).getRow());
+        assertEquals(1, userService.getAllUsers().size());
+    }
+}